@@ -0,0 +1,88 @@
+package vulc.bitmap.benchmark;
+
+import java.util.Random;
+
+import vulc.bitmap.ArgbBitmap;
+import vulc.bitmap.Bitmap;
+import vulc.bitmap.BoolBitmap;
+import vulc.bitmap.ByteBitmap;
+import vulc.bitmap.IntBitmap;
+import vulc.bitmap.raster.IntBlender;
+
+/**
+ * Bitmaps creates the bitmaps used by the benchmarks, by the name of their
+ * type: "int", "argb", "byte" or "bool".<br>
+ * The pixels are random, but the same for each run.
+ *
+ * @author Vulcalien
+ */
+final class Bitmaps {
+
+	private Bitmaps() {
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> Bitmap<T> create(String type, int width, int height, long seed) {
+		Random random = new Random(seed);
+
+		Bitmap<?> bitmap;
+		switch(type) {
+			case "int":
+				bitmap = new IntBitmap(width, height);
+				break;
+			case "argb":
+				bitmap = new ArgbBitmap(width, height);
+				break;
+			case "byte":
+				bitmap = new ByteBitmap(width, height);
+				break;
+			case "bool":
+				bitmap = new BoolBitmap(width, height);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown type: " + type);
+		}
+
+		Bitmap<T> result = (Bitmap<T>) bitmap;
+		for(int i = 0; i < result.size(); i++) {
+			result.raster.setPixel(i, Bitmaps.<T>color(type, random));
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> T color(String type, Random random) {
+		Object color;
+		switch(type) {
+			case "int":
+				color = random.nextInt() & 0xffffff;
+				break;
+			case "argb":
+				// a quarter of the pixels are opaque and a quarter transparent
+				int alpha;
+				switch(random.nextInt(4)) {
+					case 0:
+						alpha = 0xff;
+						break;
+					case 1:
+						alpha = 0;
+						break;
+					default:
+						alpha = random.nextInt(256);
+						break;
+				}
+				color = IntBlender.premultiply(alpha << 24 | random.nextInt() & 0xffffff);
+				break;
+			case "byte":
+				color = (byte) random.nextInt();
+				break;
+			case "bool":
+				color = random.nextBoolean();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown type: " + type);
+		}
+		return (T) color;
+	}
+
+}
@@ -0,0 +1,122 @@
+package vulc.bitmap.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vulc.bitmap.ArgbBitmap;
+import vulc.bitmap.Bitmap;
+import vulc.bitmap.IntBitmap;
+
+/**
+ * Measures the operations that blend colors, which only int bitmaps
+ * support: drawing and filling with a transparency, and compositColors
+ * itself on an array of colors.
+ *
+ * @author Vulcalien
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlendBenchmark {
+
+	private static final int COLORS = 4096;
+
+	@Param({"64", "256", "1024"})
+	public int size;
+
+	@Param({"int", "argb"})
+	public String type;
+
+	@Param({"255", "128", "32"})
+	public int transparency;
+
+	private Bitmap<Integer> destination;
+	private Bitmap<Integer> image;
+	private Integer color;
+
+	private Compositor compositor;
+	private int[] newColors, oldColors;
+
+	@Setup
+	public void setup() {
+		destination = Bitmaps.create(type, size, size, 1);
+		image = Bitmaps.create(type, size, size, 2);
+
+		Random random = new Random(3);
+		color = Bitmaps.color(type, random);
+
+		compositor = type.equals("argb") ? new ArgbCompositor() : new IntCompositor();
+		newColors = new int[COLORS];
+		oldColors = new int[COLORS];
+		for(int i = 0; i < COLORS; i++) {
+			newColors[i] = Bitmaps.<Integer>color(type, random);
+			oldColors[i] = Bitmaps.<Integer>color(type, random);
+		}
+	}
+
+	@Benchmark
+	public Bitmap<Integer> draw() {
+		destination.draw(image, transparency, size / 4, size / 4);
+		return destination;
+	}
+
+	@Benchmark
+	public Bitmap<Integer> fill() {
+		destination.fill(size / 8, size / 8, size - size / 8, size - size / 8, color, transparency);
+		return destination;
+	}
+
+	@Benchmark
+	public int compositColors() {
+		Compositor compositor = this.compositor;
+		int[] newColors = this.newColors;
+		int[] oldColors = this.oldColors;
+
+		int result = 0;
+		for(int i = 0; i < COLORS; i++) {
+			result += compositor.composit(newColors[i], oldColors[i], transparency);
+		}
+		return result;
+	}
+
+	// compositColors is protected: these subclasses call it
+	private interface Compositor {
+		int composit(int newColor, int oldColor, int transparency);
+	}
+
+	private static class IntCompositor extends IntBitmap implements Compositor {
+		IntCompositor() {
+			super(1, 1);
+		}
+
+		public int composit(int newColor, int oldColor, int transparency) {
+			return compositColors(newColor, oldColor, transparency);
+		}
+	}
+
+	private static class ArgbCompositor extends ArgbBitmap implements Compositor {
+		ArgbCompositor() {
+			super(1, 1);
+		}
+
+		public int composit(int newColor, int oldColor, int transparency) {
+			return compositColors(newColor, oldColor, transparency);
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package vulc.bitmap.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vulc.bitmap.Bitmap;
+
+/**
+ * Measures the opaque operations of Bitmap on each type of bitmap: drawing
+ * an image, filling a rectangle, scaling and rotating.<br>
+ * The image is drawn a quarter outside of the destination, so that it is
+ * clipped on two sides.
+ *
+ * @author Vulcalien
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawBenchmark {
+
+	@Param({"64", "256", "1024"})
+	public int size;
+
+	@Param({"int", "argb", "byte", "bool"})
+	public String type;
+
+	private Bitmap<Object> destination;
+	private Bitmap<Object> image;
+	private Object color;
+	private Object background;
+
+	@Setup
+	public void setup() {
+		destination = Bitmaps.create(type, size, size, 1);
+		image = Bitmaps.create(type, size, size, 2);
+
+		Random random = new Random(3);
+		color = Bitmaps.color(type, random);
+		background = destination.getPixel(0, 0);
+	}
+
+	@Benchmark
+	public Bitmap<Object> draw() {
+		destination.draw(image, size / 4, size / 4);
+		return destination;
+	}
+
+	@Benchmark
+	public Bitmap<Object> fill() {
+		destination.fill(size / 8, size / 8, size - size / 8, size - size / 8, color);
+		return destination;
+	}
+
+	@Benchmark
+	public Bitmap<Object> getScaled() {
+		return image.getScaled(2);
+	}
+
+	@Benchmark
+	public Bitmap<Object> fGetScaled() {
+		return image.fGetScaled(1.5);
+	}
+
+	@Benchmark
+	public Bitmap<Object> fGetRotated() {
+		return image.fGetRotated(0.5, background);
+	}
+
+}
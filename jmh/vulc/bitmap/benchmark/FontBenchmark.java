@@ -0,0 +1,113 @@
+package vulc.bitmap.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vulc.bitmap.IntBitmap;
+import vulc.bitmap.font.Font;
+
+/**
+ * Measures Font.write and Font.widthOf with each type of font. The fonts
+ * are generated: 95 characters with random pixels, from 4 to 8 pixels wide
+ * and 12 high.<br>
+ * glyphCache is the size of the glyph cache of the font, 0 disables it.
+ *
+ * @author Vulcalien
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FontBenchmark {
+
+	private static final int TYPE_BOOL = 0;
+	private static final int TYPE_BYTE = 1;
+
+	private static final int CHARS = 95;
+	private static final int HEIGHT = 12;
+
+	private static final String TEXT = "The quick brown fox jumps over the lazy dog.\n"
+	                                   + "THE QUICK BROWN FOX JUMPS OVER THE LAZY DOG!\n"
+	                                   + "0123456789 +-*/=<>()[]{} #$%&@ ~^_|\\ ,;:'\"`?";
+
+	@Param({"bool", "byte"})
+	public String fontType;
+
+	@Param({"1", "2"})
+	public int scale;
+
+	@Param({"256", "0"})
+	public int glyphCache;
+
+	@Param({"255", "128"})
+	public int transparency;
+
+	private IntBitmap destination;
+	private Font font;
+
+	@Setup
+	public void setup() {
+		Font font = new Font(new ByteArrayInputStream(createFont(fontType.equals("byte") ? TYPE_BYTE : TYPE_BOOL)));
+		if(scale != 1) font = font.getScaled(scale);
+		font.setGlyphCacheSize(glyphCache);
+		this.font = font;
+
+		destination = new IntBitmap(font.widthOf(TEXT) + 16, font.heightOf(TEXT) + 16, 0x202020);
+		destination.setFont(font);
+	}
+
+	// see the file format in Font
+	private static byte[] createFont(int type) {
+		Random random = new Random(4);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		out.write(type);
+		out.write(CHARS >>> 24);
+		out.write(CHARS >>> 16);
+		out.write(CHARS >>> 8);
+		out.write(CHARS);
+		out.write(HEIGHT);
+		out.write(1); // letter spacing
+		out.write(2); // line spacing
+
+		for(int i = 0; i < CHARS; i++) {
+			int width = 4 + random.nextInt(5);
+			out.write(width);
+
+			int nPixels = width * HEIGHT;
+			int nBytes = type == TYPE_BOOL ? (nPixels + 7) / 8 : nPixels;
+			for(int b = 0; b < nBytes; b++) {
+				out.write(random.nextInt(256));
+			}
+		}
+		return out.toByteArray();
+	}
+
+	@Benchmark
+	public IntBitmap write() {
+		destination.write(TEXT, 0xffffff, transparency, 8, 8);
+		return destination;
+	}
+
+	@Benchmark
+	public int widthOf() {
+		return font.widthOf(TEXT);
+	}
+
+}
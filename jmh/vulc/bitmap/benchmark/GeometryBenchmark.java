@@ -0,0 +1,112 @@
+package vulc.bitmap.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vulc.bitmap.Bitmap;
+import vulc.util.Geometry;
+
+/**
+ * Measures the rasterizers of Geometry. The shapes fill most of the
+ * bitmap and cross its borders, so that they are also clipped.
+ *
+ * @author Vulcalien
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryBenchmark {
+
+	private static final int LINES = 16;
+	private static final int POINTS = 11;
+
+	@Param({"64", "512"})
+	public int size;
+
+	@Param({"int", "byte", "bool"})
+	public String type;
+
+	private Bitmap<Object> bitmap;
+	private Object color;
+
+	private int[] xPoints, yPoints;
+
+	@Setup
+	public void setup() {
+		bitmap = Bitmaps.create(type, size, size, 1);
+		color = Bitmaps.color(type, new Random(2));
+
+		// a star, that crosses itself
+		xPoints = new int[POINTS];
+		yPoints = new int[POINTS];
+		for(int i = 0; i < POINTS; i++) {
+			double angle = i * 4 * Math.PI / POINTS;
+			xPoints[i] = size / 2 + (int) (Math.cos(angle) * size * 0.6);
+			yPoints[i] = size / 2 + (int) (Math.sin(angle) * size * 0.6);
+		}
+	}
+
+	@Benchmark
+	public Bitmap<Object> drawLine() {
+		// lines through the center, in every direction
+		for(int i = 0; i < LINES; i++) {
+			double angle = i * Math.PI / LINES;
+			int dx = (int) (Math.cos(angle) * size * 0.6);
+			int dy = (int) (Math.sin(angle) * size * 0.6);
+			Geometry.drawLine(bitmap, color, size / 2 - dx, size / 2 - dy, size / 2 + dx, size / 2 + dy);
+		}
+		return bitmap;
+	}
+
+	@Benchmark
+	public Bitmap<Object> drawCircle() {
+		Geometry.drawCircle(bitmap, color, size / 2, size / 2, size * 3 / 5);
+		return bitmap;
+	}
+
+	@Benchmark
+	public Bitmap<Object> fillCircle() {
+		Geometry.fillCircle(bitmap, color, size / 2, size / 2, size * 3 / 5);
+		return bitmap;
+	}
+
+	@Benchmark
+	public Bitmap<Object> drawEllipse() {
+		Geometry.drawEllipse(bitmap, color, size / 2, size / 2, size * 3 / 5, size / 3);
+		return bitmap;
+	}
+
+	@Benchmark
+	public Bitmap<Object> fillEllipse() {
+		Geometry.fillEllipse(bitmap, color, size / 2, size / 2, size * 3 / 5, size / 3);
+		return bitmap;
+	}
+
+	@Benchmark
+	public Bitmap<Object> drawPolygon() {
+		Geometry.drawPolygon(bitmap, color, xPoints, yPoints, POINTS);
+		return bitmap;
+	}
+
+	@Benchmark
+	public Bitmap<Object> fillPolygon() {
+		Geometry.fillPolygon(bitmap, color, xPoints, yPoints, POINTS);
+		return bitmap;
+	}
+
+}
@@ -1,8 +1,9 @@
 # Copyright 2019 - 2020 Vulcalien
 
-# Create a font file (v4) using an image.
+# Create a font file (v5) using an image.
 # boolean version: 1
 # byte version: 1
+# code point index: written if the code points are given
 
 from os import path
 from PIL import Image
@@ -18,7 +19,20 @@ def to1byte(num):
     return num.to_bytes(1, 'big')
 
 def to4bytes(num):
-    return num.to_bytes(4, 'big')
+    return num.to_bytes(4, 'big', signed=True)
+
+# parses ranges of code points, like '32-126, 0x4E00-0x9FFF, 0x1F600'
+# returns a list of (first code point, number of code points)
+def parse_ranges(text):
+    ranges = []
+    for part in text.split(','):
+        bounds = part.strip().split('-')
+        first = int(bounds[0], 0)
+        last = int(bounds[-1], 0)
+        if(len(bounds) > 2 or last < first or first < 0 or last > 0x10ffff):
+            raise ValueError
+        ranges.append((first, last - first + 1))
+    return ranges
 
 
 
@@ -68,10 +82,75 @@ char_widths.append(i - last_red)
 n_chars = len(char_widths)
 del last_red
 
+# ask for the code points of the characters
+# without them, the characters are the code points from 32
+index = None
+while True:
+    text = input('Insert the code points of the characters, in order, as ranges (e.g. 32-126, 0x4E00-0x9FFF)\n'
+                 + 'Leave empty to use the code points from 32:\n>')
+    if(text.strip() == ''):
+        break
+
+    try:
+        ranges = parse_ranges(text)
+    except ValueError:
+        print('Error: invalid ranges\n')
+        continue
+
+    n_code_points = sum(count for first, count in ranges)
+    if(n_code_points != n_chars):
+        print('Error: the ranges contain ' + str(n_code_points) + ' code points, but the image has ' + str(n_chars) + ' characters\n')
+        continue
+
+    # each range starts at the character after the previous range
+    index = []
+    glyph = 0
+    for first, count in ranges:
+        index.append((first, count, glyph))
+        glyph += count
+
+    # the index must be sorted by code point, without overlapping ranges
+    index.sort()
+    overlap = False
+    for i in range(1, len(index)):
+        if(index[i][0] < index[i - 1][0] + index[i - 1][1]):
+            overlap = True
+    if(overlap):
+        print('Error: the ranges overlap\n')
+        index = None
+        continue
+    break
+
+# ask for the fallback character
+fallback = -1
+if(index != None):
+    while True:
+        text = input('Insert the code point of the character used for missing code points\n'
+                     + 'Leave empty for none:\n>')
+        if(text.strip() == ''):
+            break
+
+        try:
+            code_point = int(text.strip(), 0)
+        except ValueError:
+            print('Error: Insert a number\n')
+            continue
+
+        for first, count, glyph in index:
+            if(first <= code_point < first + count):
+                fallback = glyph + code_point - first
+        if(fallback != -1):
+            break
+        print('Error: the code point is not in the font\n')
+
 #---WRITE INTO FILE---#
 out = open(dest_path, 'wb')
 
-out.write(to1byte(font_type))       # font type - byte
+FLAG_INDEXED = 0x80
+if(index != None):
+    out.write(to1byte(font_type | FLAG_INDEXED)) # font type - byte
+else:
+    out.write(to1byte(font_type))   # font type - byte
 
 out.write(to4bytes(n_chars))        # chars - int
 out.write(to1byte(font_height))     # height - byte
@@ -111,3 +190,12 @@ for i in range(n_chars):
         out.write(to1byte(byteBuffer))
 
     xOffset += cw + 1
+
+# write the code point index
+if(index != None):
+    out.write(to4bytes(len(index)))        # ranges - int
+    for first, count, glyph in index:
+        out.write(to4bytes(first))         # first code point - int
+        out.write(to4bytes(count))         # code points - int
+        out.write(to4bytes(glyph))         # first character - int
+    out.write(to4bytes(fallback))          # fallback character - int
@@ -0,0 +1,214 @@
+package vulc.bitmap;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.util.Arrays;
+
+import vulc.bitmap.metrics.RenderMetrics;
+import vulc.bitmap.raster.IntBlender;
+import vulc.bitmap.raster.Raster;
+
+/**
+ * ArgbBitmap is an IntBitmap that keeps the alpha of each pixel.<br>
+ * Pixels are stored premultiplied: the values passed to and returned by
+ * getPixel, setPixel, clear, fill and the draw methods are premultiplied
+ * ARGB colors. Use getArgb and setArgb, or IntBlender.premultiply, to
+ * convert from and to non-premultiplied colors.<br>
+ * When an ArgbBitmap is drawn, it is composited over the destination
+ * using the alpha of its pixels: the transparent colors are not used.
+ * Likewise fill, drawBool and the sprites composite translucent colors,
+ * even when transparency is 0xff. Only clear and setPixel replace the
+ * pixels with a translucent color.
+ *
+ * @author Vulcalien
+ */
+public class ArgbBitmap extends IntBitmap {
+
+	public ArgbBitmap(int width, int height) {
+		super(width, height);
+	}
+
+	public ArgbBitmap(int width, int height, int[] raster) {
+		super(width, height, raster);
+	}
+
+	public ArgbBitmap(int width, int height, Integer color) {
+		super(width, height, color);
+	}
+
+	public ArgbBitmap(Raster<Integer> raster) {
+		super(raster);
+	}
+
+	/**
+	 * Creates a bitmap from a copy of the pixels of the image,
+	 * premultiplied. Use wrap to share the pixels instead.
+	 */
+	public ArgbBitmap(BufferedImage img) {
+		super(img.getWidth(), img.getHeight(), premultipliedPixelsOf(img));
+	}
+
+	private static int[] premultipliedPixelsOf(BufferedImage img) {
+		if(img.getType() == BufferedImage.TYPE_INT_ARGB_PRE) {
+			int[] pixels = sharedPixelsOf(img);
+			if(pixels != null) return pixels.clone();
+		}
+		int[] pixels = argbPixelsOf(img);
+		for(int i = 0; i < pixels.length; i++) {
+			pixels[i] = IntBlender.premultiply(pixels[i]);
+		}
+		return pixels;
+	}
+
+	/**
+	 * Returns a bitmap that uses the int[] of a TYPE_INT_ARGB_PRE image, so
+	 * changing one changes the other. Other images are copied, like the
+	 * constructor does.
+	 */
+	public static ArgbBitmap wrap(BufferedImage img) {
+		if(img.getType() == BufferedImage.TYPE_INT_ARGB_PRE) {
+			int[] pixels = sharedPixelsOf(img);
+			if(pixels != null) return new ArgbBitmap(img.getWidth(), img.getHeight(), pixels);
+		}
+		return new ArgbBitmap(img);
+	}
+
+	/**
+	 * Returns a TYPE_INT_ARGB_PRE image that uses the same int[] as the
+	 * bitmap. Changing one changes the other.<br>
+	 * If the raster is not an IntRaster, the pixels are copied.
+	 */
+	public BufferedImage asBufferedImage() {
+		return asBufferedImage(new DirectColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), 32,
+		                                            0xff0000, 0xff00, 0xff, 0xff000000,
+		                                            true, DataBuffer.TYPE_INT));
+	}
+
+	public int getArgb(int x, int y) {
+		return IntBlender.unpremultiply(getInt(x, y));
+	}
+
+	public void setArgb(int x, int y, int argb) {
+		setInt(x, y, IntBlender.premultiply(argb));
+	}
+
+	public void draw(Bitmap<Integer> image, int transparency, int x, int y) {
+		if(image instanceof ArgbBitmap) {
+			drawArgb((ArgbBitmap) image, transparency, x, y);
+			return;
+		}
+		transparency &= 0xff;
+
+		int xStart = Math.max(0, -x);
+		int yStart = Math.max(0, -y);
+
+		int xEnd = Math.min(image.width, width - x);
+		int yEnd = Math.min(image.height, height - y);
+
+		markDirty(xStart + x, yStart + y, xEnd - xStart, yEnd - yStart);
+
+		long startTime = RenderMetrics.start();
+
+		for(int yi = yStart; yi < yEnd; yi++) {
+			drawRow(xStart + x, yi + y, image, xStart, yi, xEnd - xStart, transparency);
+		}
+		RenderMetrics.report(startTime, this, RenderMetrics.DRAW, 1, RenderMetrics.area(this, x, y, image.width, image.height), transparency);
+	}
+
+	protected void drawRow(int x, int y, Bitmap<Integer> image, int xi, int yi, int length, int transparency) {
+		if(image instanceof ArgbBitmap) {
+			compositeRow(x, y, image, xi, yi, length, transparency);
+			return;
+		}
+
+		// the image has no alpha: its pixels are opaque
+		x_for:
+		for(int i = 0; i < length; i++) {
+			int color = image.getPixel(xi + i, yi);
+			for(int j = 0; j < transparentColors.length; j++) {
+				if(color == transparentColors[j]) continue x_for;
+			}
+			color |= 0xff000000;
+
+			if(transparency == 0xff) {
+				setInt(x + i, y, color);
+			} else {
+				setInt(x + i, y, color, transparency);
+			}
+		}
+	}
+
+	protected void compositeRow(int x, int y, Bitmap<Integer> image, int xi, int yi, int length, int transparency) {
+		blendPixels(x, y, image, xi, yi, length, transparency);
+	}
+
+	protected void drawSpan(Bitmap<Integer> image, int x, int y, int xi, int yi, int length, int transparency) {
+		if(image instanceof ArgbBitmap) {
+			compositeRow(x, y, image, xi, yi, length, transparency);
+			return;
+		}
+
+		// the image has no alpha: its pixels are opaque
+		for(int i = 0; i < length; i++) {
+			int color = image.getPixel(xi + i, yi) | 0xff000000;
+			if(transparency == 0xff) {
+				setInt(x + i, y, color);
+			} else {
+				setInt(x + i, y, color, transparency);
+			}
+		}
+	}
+
+	protected void drawRun(RLESprite<Integer> sprite, int r, int x, int y, int length, int transparency) {
+		if(sprite.hasAlpha) {
+			super.drawRun(sprite, r, x, y, length, transparency);
+			return;
+		}
+
+		// the sprite has no alpha: its colors are opaque
+		int color = sprite.intColors[r] | 0xff000000;
+		if(transparency == 0xff) {
+			int i = x + y * width;
+			if(intRaster != null) Arrays.fill(intRaster.getArray(), i, i + length, color);
+			else raster.fill(i, i + length, color);
+		} else {
+			blendSpan(x, y, length, color, transparency);
+		}
+	}
+
+	protected boolean replacesInt(int color, int transparency) {
+		// a translucent color is composited even if transparency is 0xff
+		return transparency == 0xff && color >>> 24 == 0xff;
+	}
+
+	protected void blendInts(int i, int end, int color, int transparency) {
+		intRaster.composite(i, end, color, transparency);
+	}
+
+	protected void blendPixels(int x, int y, Bitmap<Integer> image, int xi, int yi, int length, int transparency) {
+		if(intRaster == null) {
+			super.blendPixels(x, y, image, xi, yi, length, transparency);
+			return;
+		}
+		intRaster.compositePixels(x + y * width, image.raster, xi + yi * image.width, length, transparency);
+	}
+
+	protected void blendMask(int x, int y, Bitmap<Byte> mask, int xi, int yi, int length, Integer color, int transparency) {
+		if(intRaster == null) {
+			super.blendMask(x, y, mask, xi, yi, length, color, transparency);
+			return;
+		}
+		intRaster.compositeMask(x + y * width, mask.raster, xi + yi * mask.width, length, color, transparency);
+	}
+
+	protected int compositColors(int newColor, int oldColor, int transparency) {
+		return IntBlender.composite(newColor, oldColor, transparency);
+	}
+
+	protected int paletteColor(int rgb) {
+		return rgb | 0xff000000;
+	}
+
+}
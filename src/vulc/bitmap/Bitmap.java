@@ -15,10 +15,20 @@
  ******************************************************************************/
 package vulc.bitmap;
 
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
 import java.lang.reflect.Array;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import vulc.bitmap.font.Font;
+import vulc.bitmap.metrics.RenderMetrics;
+import vulc.bitmap.raster.BitRaster;
 import vulc.bitmap.raster.Raster;
+import vulc.bitmap.raster.TransformRaster;
+import vulc.bitmap.raster.ViewRaster;
 
 @SuppressWarnings("unchecked")
 public abstract class Bitmap<T> {
@@ -32,6 +42,12 @@ public abstract class Bitmap<T> {
 	protected T[] transparentColors;
 	protected Font font;
 
+	// if not null, whole-image operations are split in bands of rows
+	protected ForkJoinPool pool;
+
+	// if not null, the changed areas are added to it
+	protected DirtyRegion dirtyRegion;
+
 	public Bitmap(Class<T> type, Raster<T> raster) {
 		this.type = type;
 
@@ -42,9 +58,25 @@ public abstract class Bitmap<T> {
 		this.transparentColors = (T[]) Array.newInstance(type, 0);
 	}
 
-	protected Bitmap<T> getSameTypeInstance(int width, int height) {
+	/**
+	 * Returns a new bitmap of the same class as this one, with the given
+	 * size.
+	 */
+	public Bitmap<T> getSameTypeInstance(int width, int height) {
+		long startTime = RenderMetrics.start();
 		try {
-			return getClass().getConstructor(Integer.TYPE, Integer.TYPE).newInstance(width, height);
+			Bitmap<T> result = getClass().getConstructor(Integer.TYPE, Integer.TYPE).newInstance(width, height);
+			RenderMetrics.report(startTime, result, RenderMetrics.ALLOCATE, 1, result.size(), 0xff);
+			return result;
+		} catch(Exception e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	protected Bitmap<T> getSameTypeInstance(Raster<T> raster) {
+		try {
+			return getClass().getConstructor(Raster.class).newInstance(raster);
 		} catch(Exception e) {
 			e.printStackTrace();
 		}
@@ -52,8 +84,11 @@ public abstract class Bitmap<T> {
 	}
 
 	protected Bitmap<T> getSameTypeInstance(int width, int height, T color) {
+		long startTime = RenderMetrics.start();
 		try {
-			return getClass().getConstructor(Integer.TYPE, Integer.TYPE, type).newInstance(width, height, color);
+			Bitmap<T> result = getClass().getConstructor(Integer.TYPE, Integer.TYPE, type).newInstance(width, height, color);
+			RenderMetrics.report(startTime, result, RenderMetrics.ALLOCATE, 1, result.size(), 0xff);
+			return result;
 		} catch(Exception e) {
 			e.printStackTrace();
 		}
@@ -80,25 +115,170 @@ public abstract class Bitmap<T> {
 		this.font = font;
 	}
 
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public DirtyRegion getDirtyRegion() {
+		return dirtyRegion;
+	}
+
+	/**
+	 * Sets the region that keeps track of the changes made to this bitmap,
+	 * or null to stop tracking them. Views do not share the region of the
+	 * bitmap they come from, and changes made directly to the raster are
+	 * not tracked: use markDirty for them.
+	 */
+	public void setDirtyRegion(DirtyRegion dirtyRegion) {
+		this.dirtyRegion = dirtyRegion;
+	}
+
+	/**
+	 * Adds a rectangle to the dirty region, if there is one. The part of the
+	 * rectangle outside this bitmap is ignored.
+	 */
+	public void markDirty(int x, int y, int width, int height) {
+		DirtyRegion region = dirtyRegion;
+		if(region == null) return;
+
+		int x0 = Math.max(x, 0);
+		int y0 = Math.max(y, 0);
+		int x1 = (int) Math.min((long) x + width, this.width);
+		int y1 = (int) Math.min((long) y + height, this.height);
+		region.add(x0, y0, x1, y1);
+	}
+
+	/**
+	 * Runs the task on the rows from y0 (inclusive) to y1 (exclusive) of the
+	 * destination. If a pool is set and the raster of the destination allows
+	 * it, the rows are split in bands that run in parallel.
+	 */
+	protected void forEachRow(Bitmap<?> destination, int y0, int y1, RowTask task) {
+		int rows = y1 - y0;
+		if(rows <= 0) return;
+
+		if(pool == null || !destination.raster.canWriteRowsInParallel()
+		   || (long) rows * destination.width < RowAction.MIN_PIXELS * 2) {
+			task.run(y0, y1);
+		} else {
+			int minRows = Math.max(1, RowAction.MIN_PIXELS / Math.max(1, destination.width));
+			pool.invoke(new RowAction(task, y0, y1, minRows));
+		}
+	}
+
 	public T getPixel(int x, int y) {
-		return raster.getPixel(x + y * width);
+		return raster.getPixel(x, y);
 	}
 
 	public void setPixel(int x, int y, T color) {
-		raster.setPixel(x + y * width, color);
+		raster.setPixel(x, y, color);
+		markDirty(x, y, 1, 1);
 	}
 
+	/**
+	 * Draws a pixel like a fill of a single pixel: the bitmaps that cannot
+	 * blend only support the transparencies that replace the pixel.
+	 */
 	public void setPixel(int x, int y, T color, int transparency) {
-		throw new UnsupportedOperationException();
+		if(!replaces(color, transparency & 0xff)) throw new UnsupportedOperationException();
+		setPixel(x, y, color);
 	}
 
-	public void clear(T color) {
-		int size = size();
-		for(int i = 0; i < size; i++) {
-			raster.setPixel(i, color);
+	// the blend methods are called by the bulk operations
+	// subclasses can override them to blend whole spans at once
+
+	protected void blendSpan(int x, int y, int length, T color, int transparency) {
+		for(int i = 0; i < length; i++) {
+			setPixel(x + i, y, color, transparency);
+		}
+	}
+
+	protected void blendPixels(int x, int y, Bitmap<T> image, int xi, int yi, int length, int transparency) {
+		for(int i = 0; i < length; i++) {
+			setPixel(x + i, y, image.getPixel(xi + i, yi), transparency);
 		}
 	}
 
+	protected void blendMask(int x, int y, Bitmap<Byte> mask, int xi, int yi, int length, T color, int transparency) {
+		for(int i = 0; i < length; i++) {
+			int alpha = Byte.toUnsignedInt(mask.getPixel(xi + i, yi));
+			setPixel(x + i, y, color, alpha * transparency / 0xff);
+		}
+	}
+
+	/**
+	 * Returns true if drawing the color with the given transparency sets
+	 * the pixels to the color, false if it blends with them.
+	 */
+	protected boolean replaces(T color, int transparency) {
+		return transparency == 0xff;
+	}
+
+	// draws length pixels of a row of the image, like draw does
+	protected void drawRow(int x, int y, Bitmap<T> image, int xi, int yi, int length, int transparency) {
+		if(transparentColors.length == 0) {
+			if(transparency == 0xff) {
+				raster.copyPixels(x + y * width, image.raster, xi + yi * image.width, length);
+			} else {
+				blendPixels(x, y, image, xi, yi, length, transparency);
+			}
+			return;
+		}
+
+		x_for:
+		for(int i = 0; i < length; i++) {
+			T color = image.getPixel(xi + i, yi);
+			for(int j = 0; j < transparentColors.length; j++) {
+				if(color.equals(transparentColors[j])) continue x_for;
+			}
+
+			if(transparency == 0xff) {
+				setPixel(x + i, y, color);
+			} else {
+				setPixel(x + i, y, color, transparency);
+			}
+		}
+	}
+
+	/**
+	 * Copies length pixels of this bitmap into the first pixels of line.
+	 * The position of the first pixel is (u, v) and it moves by (du, dv)
+	 * for each pixel: the values are in 16.16 fixed point and must stay
+	 * inside this bitmap.<br>
+	 * If bilinear is true, each pixel is interpolated from the four pixels
+	 * nearest to its position. Subclasses that support it override this
+	 * method and checkBilinear.
+	 */
+	protected void sampleRow(Bitmap<T> line, int length, long u, long v, long du, long dv, boolean bilinear) {
+		for(int i = 0; i < length; i++) {
+			line.raster.copyPixel(i, raster, (int) (u >> 16) + (int) (v >> 16) * width);
+			u += du;
+			v += dv;
+		}
+	}
+
+	/**
+	 * Throws IllegalArgumentException if sampleRow cannot interpolate the
+	 * pixels of this bitmap. It is called before a bilinear transform
+	 * starts, so that nothing is drawn.
+	 */
+	protected void checkBilinear() {
+		throw new IllegalArgumentException(getClass().getSimpleName() + " does not support the bilinear filter");
+	}
+
+	public void clear(T color) {
+		long startTime = RenderMetrics.start();
+
+		raster.fill(0, size(), color);
+		markDirty(0, 0, width, height);
+
+		RenderMetrics.report(startTime, this, RenderMetrics.CLEAR, 1, size(), 0xff);
+	}
+
 	public void fill(int x0, int y0, int x1, int y1, T color, int transparency) {
 		transparency &= 0xff;
 
@@ -108,15 +288,24 @@ public abstract class Bitmap<T> {
 		x1 = Math.min(x1, width - 1);
 		y1 = Math.min(y1, height - 1);
 
-		for(int y = y0; y <= y1; y++) {
-			for(int x = x0; x <= x1; x++) {
-				if(transparency == 0xff) {
-					setPixel(x, y, color);
+		if(x0 > x1 || y0 > y1) return;
+		markDirty(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+
+		long startTime = RenderMetrics.start();
+
+		int xStart = x0, xEnd = x1;
+		int alpha = transparency;
+		boolean replace = replaces(color, transparency);
+		forEachRow(this, y0, y1 + 1, (rowStart, rowEnd) -> {
+			for(int y = rowStart; y < rowEnd; y++) {
+				if(replace) {
+					raster.fill(xStart + y * width, xEnd + 1 + y * width, color);
 				} else {
-					setPixel(x, y, color, transparency);
+					blendSpan(xStart, y, xEnd - xStart + 1, color, alpha);
 				}
 			}
-		}
+		});
+		RenderMetrics.report(startTime, this, RenderMetrics.FILL, 1, (long) (x1 - x0 + 1) * (y1 - y0 + 1), transparency);
 	}
 
 	public void fill(int x0, int y0, int x1, int y1, T color) {
@@ -132,50 +321,208 @@ public abstract class Bitmap<T> {
 		int xEnd = Math.min(image.width, width - x);
 		int yEnd = Math.min(image.height, height - y);
 
-		for(int yi = yStart; yi < yEnd; yi++) {
-			int yPix = yi + y;
+		markDirty(xStart + x, yStart + y, xEnd - xStart, yEnd - yStart);
 
-			x_for:
-			for(int xi = xStart; xi < xEnd; xi++) {
-				int xPix = xi + x;
+		long startTime = RenderMetrics.start();
 
-				T color = image.getPixel(xi, yi);
-				for(int i = 0; i < transparentColors.length; i++) {
-					if(color.equals(transparentColors[i])) continue x_for;
+		int alpha = transparency;
+		RowTask task = (rowStart, rowEnd) -> {
+			if(transparentColors.length == 0) {
+				if(alpha == 0xff) {
+					// no transparency and no transparent colors: copy the rows directly
+					raster.copyRect(xStart + x, rowStart + y, image.raster, xStart, rowStart, xEnd - xStart, rowEnd - rowStart);
+				} else {
+					for(int yi = rowStart; yi < rowEnd; yi++) {
+						blendPixels(xStart + x, yi + y, image, xStart, yi, xEnd - xStart, alpha);
+					}
 				}
+				return;
+			}
 
-				if(transparency == 0xff) {
-					setPixel(xPix, yPix, color);
-				} else {
-					setPixel(xPix, yPix, color, transparency);
+			for(int yi = rowStart; yi < rowEnd; yi++) {
+				int yPix = yi + y;
+
+				x_for:
+				for(int xi = xStart; xi < xEnd; xi++) {
+					int xPix = xi + x;
+
+					T color = image.getPixel(xi, yi);
+					for(int i = 0; i < transparentColors.length; i++) {
+						if(color.equals(transparentColors[i])) continue x_for;
+					}
+
+					if(alpha == 0xff) {
+						setPixel(xPix, yPix, color);
+					} else {
+						setPixel(xPix, yPix, color, alpha);
+					}
 				}
 			}
+		};
+
+		// drawing a bitmap into itself depends on the order of the rows
+		if(rootOf(image.raster) == rootOf(raster)) {
+			task.run(yStart, yEnd);
+		} else {
+			forEachRow(this, yStart, yEnd, task);
 		}
+		RenderMetrics.report(startTime, this, RenderMetrics.DRAW, 1, RenderMetrics.area(this, x, y, image.width, image.height), transparency);
 	}
 
 	public void draw(Bitmap<T> image, int x, int y) {
 		this.draw(image, 0xff, x, y);
 	}
 
-	public void drawByte(Bitmap<Byte> image, T color, int transparency, int x, int y) {
+	/**
+	 * Draws the image transformed by an affine transform, that maps the
+	 * coordinates of the image to the coordinates of this bitmap.<br>
+	 * Each pixel of this bitmap takes the pixel of the image under its
+	 * center or, if bilinear is true, interpolates the four nearest ones.
+	 *
+	 * @throws IllegalArgumentException if bilinear is true and the image
+	 *         does not support the bilinear filter
+	 */
+	public void draw(Bitmap<T> image, AffineTransform transform, int transparency, boolean bilinear) {
+		if(bilinear) image.checkBilinear();
+		transform(image, this, transform, transparency & 0xff, bilinear);
+	}
+
+	public void draw(Bitmap<T> image, AffineTransform transform) {
+		this.draw(image, transform, 0xff, false);
+	}
+
+	/**
+	 * Draws the opaque spans of the sprite. The transparent colors of this
+	 * bitmap are not checked: the sprite already knows which pixels are
+	 * transparent.
+	 */
+	public void draw(Sprite<T> sprite, int transparency, int x, int y) {
 		transparency &= 0xff;
 
+		Bitmap<T> image = sprite.bitmap;
+
 		int xStart = Math.max(0, -x);
 		int yStart = Math.max(0, -y);
 
 		int xEnd = Math.min(image.width, width - x);
 		int yEnd = Math.min(image.height, height - y);
 
-		for(int yi = yStart; yi < yEnd; yi++) {
-			int yPix = yi + y;
+		if(xStart >= xEnd) return;
+		markDirty(xStart + x, yStart + y, xEnd - xStart, yEnd - yStart);
 
-			for(int xi = xStart; xi < xEnd; xi++) {
-				int xPix = xi + x;
+		long startTime = RenderMetrics.start();
+
+		int alpha = transparency;
+		RowTask task = (rowStart, rowEnd) -> {
+			for(int yi = rowStart; yi < rowEnd; yi++) {
+				int yPix = yi + y;
+
+				int spansEnd = sprite.rows[yi + 1];
+				for(int s = sprite.rows[yi]; s < spansEnd; s += 2) {
+					int start = Math.max(sprite.spans[s], xStart);
+					int end = Math.min(sprite.spans[s + 1], xEnd);
+					if(start < end) drawSpan(image, start + x, yPix, start, yi, end - start, alpha);
+				}
+			}
+		};
+
+		// drawing a bitmap into itself depends on the order of the rows
+		if(rootOf(image.raster) == rootOf(raster)) {
+			task.run(yStart, yEnd);
+		} else {
+			forEachRow(this, yStart, yEnd, task);
+		}
+		RenderMetrics.report(startTime, this, RenderMetrics.DRAW_SPRITE, 1, RenderMetrics.area(this, x, y, image.width, image.height), transparency);
+	}
+
+	public void draw(Sprite<T> sprite, int x, int y) {
+		this.draw(sprite, 0xff, x, y);
+	}
+
+	// draws an opaque span of a sprite's bitmap at x, y
+	protected void drawSpan(Bitmap<T> image, int x, int y, int xi, int yi, int length, int transparency) {
+		if(transparency == 0xff) {
+			raster.copyPixels(x + y * width, image.raster, xi + yi * image.width, length);
+		} else {
+			blendPixels(x, y, image, xi, yi, length, transparency);
+		}
+	}
+
+	/**
+	 * Draws the runs of the sprite: opaque runs are filled with their color
+	 * (or blended, if transparency is not 0xff) and transparent runs are
+	 * skipped.
+	 */
+	public void draw(RLESprite<T> sprite, int transparency, int x, int y) {
+		transparency &= 0xff;
+
+		int xStart = Math.max(0, -x);
+		int yStart = Math.max(0, -y);
+
+		int xEnd = Math.min(sprite.width, width - x);
+		int yEnd = Math.min(sprite.height, height - y);
+
+		if(xStart >= xEnd) return;
+		markDirty(xStart + x, yStart + y, xEnd - xStart, yEnd - yStart);
 
-				int alpha = Byte.toUnsignedInt(image.getPixel(xi, yi));
-				setPixel(xPix, yPix, color, alpha * transparency / 0xff);
+		long startTime = RenderMetrics.start();
+
+		int alpha = transparency;
+		forEachRow(this, yStart, yEnd, (rowStart, rowEnd) -> {
+			for(int yi = rowStart; yi < rowEnd; yi++) {
+				int yPix = yi + y;
+
+				int runStart = 0;
+				int runsEnd = sprite.rows[yi + 1];
+				for(int r = sprite.rows[yi]; r < runsEnd && runStart < xEnd; r++) {
+					int length = sprite.lengths[r];
+					if(length < 0) {
+						runStart -= length;
+						continue;
+					}
+					int runEnd = runStart + length;
+
+					int start = Math.max(runStart, xStart);
+					int end = Math.min(runEnd, xEnd);
+					if(start < end) drawRun(sprite, r, start + x, yPix, end - start, alpha);
+					runStart = runEnd;
+				}
 			}
+		});
+		RenderMetrics.report(startTime, this, RenderMetrics.DRAW_SPRITE, 1, RenderMetrics.area(this, x, y, sprite.width, sprite.height), transparency);
+	}
+
+	public void draw(RLESprite<T> sprite, int x, int y) {
+		this.draw(sprite, 0xff, x, y);
+	}
+
+	// draws the opaque run r of the sprite at x, y
+	protected void drawRun(RLESprite<T> sprite, int r, int x, int y, int length, int transparency) {
+		T color = sprite.colorOf(r);
+		if(replaces(color, transparency)) {
+			raster.fill(x + y * width, x + length + y * width, color);
+		} else {
+			blendSpan(x, y, length, color, transparency);
+		}
+	}
+
+	public void drawByte(Bitmap<Byte> image, T color, int transparency, int x, int y) {
+		transparency &= 0xff;
+
+		int xStart = Math.max(0, -x);
+		int yStart = Math.max(0, -y);
+
+		int xEnd = Math.min(image.width, width - x);
+		int yEnd = Math.min(image.height, height - y);
+
+		markDirty(xStart + x, yStart + y, xEnd - xStart, yEnd - yStart);
+
+		long startTime = RenderMetrics.start();
+
+		for(int yi = yStart; yi < yEnd; yi++) {
+			blendMask(xStart + x, yi + y, image, xStart, yi, xEnd - xStart, color, transparency);
 		}
+		RenderMetrics.report(startTime, this, RenderMetrics.DRAW_MASK, 1, RenderMetrics.area(this, x, y, image.width, image.height), transparency);
 	}
 
 	public void drawByte(Bitmap<Byte> image, T color, int x, int y) {
@@ -191,6 +538,39 @@ public abstract class Bitmap<T> {
 		int xEnd = Math.min(image.width, width - x);
 		int yEnd = Math.min(image.height, height - y);
 
+		markDirty(xStart + x, yStart + y, xEnd - xStart, yEnd - yStart);
+
+		long startTime = RenderMetrics.start();
+
+		boolean replace = replaces(color, transparency);
+
+		// bit-packed image: skip empty words and draw the spans of true pixels
+		if(image.raster instanceof BitRaster) {
+			BitRaster bits = (BitRaster) image.raster;
+
+			for(int yi = yStart; yi < yEnd; yi++) {
+				int yPix = yi + y;
+				int row = yi * image.width;
+
+				int end = row + xEnd;
+				int i = bits.nextSetBit(row + xStart, end);
+				while(i < end) {
+					int spanEnd = bits.nextClearBit(i, end);
+
+					int xPix = i - row + x;
+					int length = spanEnd - i;
+					if(replace) {
+						raster.fill(xPix + yPix * width, xPix + length + yPix * width, color);
+					} else {
+						blendSpan(xPix, yPix, length, color, transparency);
+					}
+					i = bits.nextSetBit(spanEnd, end);
+				}
+			}
+			RenderMetrics.report(startTime, this, RenderMetrics.DRAW_MASK, 1, RenderMetrics.area(this, x, y, image.width, image.height), transparency);
+			return;
+		}
+
 		for(int yi = yStart; yi < yEnd; yi++) {
 			int yPix = yi + y;
 
@@ -199,7 +579,7 @@ public abstract class Bitmap<T> {
 
 				boolean val = image.getPixel(xi, yi);
 				if(val == true) {
-					if(transparency == 0xff) {
+					if(replace) {
 						setPixel(xPix, yPix, color);
 					} else {
 						setPixel(xPix, yPix, color, transparency);
@@ -207,12 +587,62 @@ public abstract class Bitmap<T> {
 				}
 			}
 		}
+		RenderMetrics.report(startTime, this, RenderMetrics.DRAW_MASK, 1, RenderMetrics.area(this, x, y, image.width, image.height), transparency);
 	}
 
 	public void drawBool(Bitmap<Boolean> image, T color, int x, int y) {
 		this.drawBool(image, color, 0xff, x, y);
 	}
 
+	/**
+	 * Draws the mask with the given color, like drawBool or drawByte would
+	 * draw the bitmap the mask was made from.
+	 */
+	public void drawMask(MaskSprite mask, T color, int transparency, int x, int y) {
+		transparency &= 0xff;
+
+		int xStart = Math.max(0, -x);
+		int yStart = Math.max(0, -y);
+
+		int xEnd = Math.min(mask.width, width - x);
+		int yEnd = Math.min(mask.height, height - y);
+
+		if(xStart >= xEnd) return;
+		markDirty(xStart + x, yStart + y, xEnd - xStart, yEnd - yStart);
+
+		long startTime = RenderMetrics.start();
+
+		boolean replace = replaces(color, transparency);
+		for(int yi = yStart; yi < yEnd; yi++) {
+			int yPix = yi + y;
+
+			int runStart = 0;
+			int runsEnd = mask.rows[yi + 1];
+			for(int r = mask.rows[yi]; r < runsEnd && runStart < xEnd; r++) {
+				int runEnd = runStart + mask.lengths[r];
+				int type = mask.types[r];
+
+				int start = Math.max(runStart, xStart);
+				int end = Math.min(runEnd, xEnd);
+				if(type != MaskSprite.TRANSPARENT && start < end) {
+					if(type == MaskSprite.PARTIAL) {
+						blendMask(start + x, yPix, mask.mask, start, yi, end - start, color, transparency);
+					} else if(replace) {
+						raster.fill(start + x + yPix * width, end + x + yPix * width, color);
+					} else {
+						blendSpan(start + x, yPix, end - start, color, transparency);
+					}
+				}
+				runStart = runEnd;
+			}
+		}
+		RenderMetrics.report(startTime, this, RenderMetrics.DRAW_MASK, 1, RenderMetrics.area(this, x, y, mask.width, mask.height), transparency);
+	}
+
+	public void drawMask(MaskSprite mask, T color, int x, int y) {
+		this.drawMask(mask, color, 0xff, x, y);
+	}
+
 	public void write(String text, T color, int transparency, int x, int y) {
 		font.write(this, text, color, transparency, x, y);
 	}
@@ -224,27 +654,34 @@ public abstract class Bitmap<T> {
 	public Bitmap<T> getCopy() {
 		Bitmap<T> copy = getSameTypeInstance(width, height);
 
-		int size = size();
-		for(int i = 0; i < size; i++) {
-			copy.raster.setPixel(i, raster.getPixel(i));
-		}
+		copy.raster.copyPixels(0, raster, 0, size());
 		return copy;
 	}
 
 	public Bitmap<T> getScaled(int xScale, int yScale) {
 		Bitmap<T> result = getSameTypeInstance(width * xScale, height * yScale);
+		long startTime = RenderMetrics.start();
 
-		for(int y = 0; y < height; y++) {
-			for(int x = 0; x < width; x++) {
-				T color = getPixel(x, y);
+		// each row of this bitmap is scaled into yScale rows of the result
+		forEachRow(result, 0, height, (rowStart, rowEnd) -> {
+			for(int y = rowStart; y < rowEnd; y++) {
+				int row = y * yScale * result.width;
+
+				for(int x = 0; x < width; x++) {
+					int srcIndex = x + y * width;
 
-				for(int yi = 0; yi < yScale; yi++) {
 					for(int xi = 0; xi < xScale; xi++) {
-						result.setPixel(x * xScale + xi, y * yScale + yi, color);
+						result.raster.copyPixel(row + x * xScale + xi, raster, srcIndex);
 					}
 				}
+
+				// the other rows are copies of the first one
+				for(int yi = 1; yi < yScale; yi++) {
+					result.raster.copyPixels(row + yi * result.width, result.raster, row, result.width);
+				}
 			}
-		}
+		});
+		RenderMetrics.report(startTime, result, RenderMetrics.SCALE, 1, result.size(), 0xff);
 		return result;
 	}
 
@@ -259,15 +696,7 @@ public abstract class Bitmap<T> {
 		double xScale = (double) width / this.width;
 		double yScale = (double) height / this.height;
 
-		for(int y1 = 0; y1 < height; y1++) {
-			int y0 = (int) (y1 / yScale);
-			for(int x1 = 0; x1 < width; x1++) {
-				int x0 = (int) (x1 / xScale);
-
-				T color = getPixel(x0, y0);
-				result.setPixel(x1, y1, color);
-			}
-		}
+		transform(this, result, AffineTransform.getScaleInstance(xScale, yScale), 0xff, false);
 		return result;
 	}
 
@@ -281,35 +710,198 @@ public abstract class Bitmap<T> {
 		return fGetScaled(scale, scale);
 	}
 
+	/**
+	 * Returns this bitmap transformed by an affine transform. The result is
+	 * just big enough to contain the transformed bitmap and its pixels that
+	 * are not covered by it are set to background.
+	 *
+	 * @throws IllegalArgumentException if bilinear is true and this bitmap
+	 *         does not support the bilinear filter
+	 */
+	public Bitmap<T> getTransformed(AffineTransform transform, boolean bilinear, T background) {
+		if(bilinear) checkBilinear();
+
+		Rectangle2D bounds = transform.createTransformedShape(new Rectangle(width, height)).getBounds2D();
+
+		int x0 = (int) Math.floor(bounds.getMinX());
+		int y0 = (int) Math.floor(bounds.getMinY());
+		int x1 = (int) Math.ceil(bounds.getMaxX());
+		int y1 = (int) Math.ceil(bounds.getMaxY());
+
+		Bitmap<T> result = getSameTypeInstance(x1 - x0, y1 - y0, background);
+
+		AffineTransform t = AffineTransform.getTranslateInstance(-x0, -y0);
+		t.concatenate(transform);
+
+		transform(this, result, t, 0xff, bilinear);
+		return result;
+	}
+
 	public Bitmap<T> getSubimage(int x, int y, int width, int height) {
 		Bitmap<T> result = getSameTypeInstance(width, height);
 
-		for(int yi = 0; yi < height; yi++) {
-			int yPix = yi + y;
+		result.raster.copyRect(0, 0, raster, x, y, width, height);
+		return result;
+	}
 
-			for(int xi = 0; xi < width; xi++) {
-				int xPix = xi + x;
+	/**
+	 * Returns a bitmap that shares the pixels of this bitmap in the given
+	 * region: changes made to one of them are visible in the other.
+	 */
+	public Bitmap<T> getView(int x, int y, int width, int height) {
+		return getViewInstance(new ViewRaster<T>(raster, x, y, width, height));
+	}
+
+	/**
+	 * Returns a flipped view of this bitmap. Unlike getFlipped, no pixels
+	 * are copied: they are remapped when read or written.
+	 */
+	public Bitmap<T> getFlippedView(boolean horizontal, boolean vertical) {
+		return getViewInstance(TransformRaster.flipped(raster, horizontal, vertical));
+	}
+
+	/**
+	 * Returns a rotated view of this bitmap. Unlike getRotated, no pixels
+	 * are copied: they are remapped when read or written.
+	 */
+	public Bitmap<T> getRotatedView(int rot) {
+		return getViewInstance(TransformRaster.rotated(raster, rot));
+	}
+
+	/**
+	 * Returns a scaled view of this bitmap. Unlike getScaled, no pixels
+	 * are copied: they are remapped when read or written.
+	 */
+	public Bitmap<T> getScaledView(int xScale, int yScale) {
+		return getViewInstance(TransformRaster.scaled(raster, xScale, yScale));
+	}
+
+	public Bitmap<T> getScaledView(int scale) {
+		return getScaledView(scale, scale);
+	}
+
+	/**
+	 * Returns a bitmap that has its own pixels: a copy if this bitmap is a
+	 * view, this bitmap otherwise.
+	 */
+	public Bitmap<T> materialize() {
+		if(raster instanceof ViewRaster || raster instanceof TransformRaster) {
+			return getCopy();
+		}
+		return this;
+	}
+
+	private Bitmap<T> getViewInstance(Raster<T> raster) {
+		Bitmap<T> view = getSameTypeInstance(raster);
+		view.transparentColors = transparentColors;
+		view.font = font;
+		view.pool = pool;
+		return view;
+	}
+
+	/**
+	 * Draws the image into the destination. For each row of the destination,
+	 * the position in the image is stepped in 16.16 fixed point and only the
+	 * span of pixels that falls inside the image is sampled, so no pixel has
+	 * to be checked.
+	 */
+	private void transform(Bitmap<T> image, Bitmap<T> destination, AffineTransform transform,
+	                       int transparency, boolean bilinear) {
+		AffineTransform inverse;
+		try {
+			inverse = transform.createInverse();
+		} catch(NoninvertibleTransformException e) {
+			// the image has no area: nothing to draw
+			return;
+		}
+
+		Rectangle2D bounds = transform.createTransformedShape(new Rectangle(image.width, image.height)).getBounds2D();
+
+		int xStart = (int) Math.max(0, Math.floor(bounds.getMinX()));
+		int yStart = (int) Math.max(0, Math.floor(bounds.getMinY()));
+		int xEnd = (int) Math.min(destination.width, Math.ceil(bounds.getMaxX()));
+		int yEnd = (int) Math.min(destination.height, Math.ceil(bounds.getMaxY()));
+
+		if(xStart >= xEnd) return;
+		destination.markDirty(xStart, yStart, xEnd - xStart, yEnd - yStart);
+
+		long startTime = RenderMetrics.start();
+
+		long du = Math.round(inverse.getScaleX() * 0x10000);
+		long dv = Math.round(inverse.getShearY() * 0x10000);
+
+		long uLimit = (long) image.width << 16;
+		long vLimit = (long) image.height << 16;
 
-				T color = getPixel(xPix, yPix);
-				result.setPixel(xi, yi, color);
+		RowTask task = (rowStart, rowEnd) -> {
+			Bitmap<T> line = image.getSameTypeInstance(xEnd - xStart, 1);
+
+			for(int y = rowStart; y < rowEnd; y++) {
+				// the position in the image of the center of the pixel (0, y)
+				double yc = y + 0.5;
+				long u = Math.round((inverse.getScaleX() * 0.5 + inverse.getShearX() * yc + inverse.getTranslateX()) * 0x10000);
+				long v = Math.round((inverse.getShearY() * 0.5 + inverse.getScaleY() * yc + inverse.getTranslateY()) * 0x10000);
+
+				long x0 = Math.max(Math.max(xStart, spanStart(u, du, uLimit)), spanStart(v, dv, vLimit));
+				long x1 = Math.min(Math.min(xEnd, spanEnd(u, du, uLimit)), spanEnd(v, dv, vLimit));
+				if(x0 >= x1) continue;
+
+				int length = (int) (x1 - x0);
+				image.sampleRow(line, length, u + x0 * du, v + x0 * dv, du, dv, bilinear);
+				destination.drawRow((int) x0, y, line, 0, 0, length, transparency);
+			}
+		};
+
+		// drawing a bitmap into itself depends on the order of the rows
+		if(rootOf(image.raster) == rootOf(destination.raster)) {
+			task.run(yStart, yEnd);
+		} else {
+			forEachRow(destination, yStart, yEnd, task);
+		}
+		RenderMetrics.report(startTime, destination, RenderMetrics.TRANSFORM, 1,
+		                     (long) (xEnd - xStart) * (yEnd - yStart), transparency);
+	}
+
+	// the first x for which 0 <= p + x * dp < limit
+	private static long spanStart(long p, long dp, long limit) {
+		if(dp > 0) return -Math.floorDiv(p, dp);
+		if(dp < 0) return -Math.floorDiv(limit - 1 - p, -dp);
+		return (p >= 0 && p < limit) ? Long.MIN_VALUE : Long.MAX_VALUE;
+	}
+
+	// the last x for which 0 <= p + x * dp < limit, plus one
+	private static long spanEnd(long p, long dp, long limit) {
+		if(dp > 0) return Math.floorDiv(limit - 1 - p, dp) + 1;
+		if(dp < 0) return Math.floorDiv(p, -dp) + 1;
+		return (p >= 0 && p < limit) ? Long.MAX_VALUE : Long.MIN_VALUE;
+	}
+
+	static Raster<?> rootOf(Raster<?> raster) {
+		while(true) {
+			if(raster instanceof ViewRaster) {
+				raster = ((ViewRaster<?>) raster).getParent();
+			} else if(raster instanceof TransformRaster) {
+				raster = ((TransformRaster<?>) raster).getParent();
+			} else {
+				return raster;
 			}
 		}
-		return result;
 	}
 
 	public Bitmap<T> getFlipped(boolean horizontal, boolean vertical) {
 		Bitmap<T> result = getSameTypeInstance(width, height);
 
-		for(int y = 0; y < height; y++) {
-			int yPix = vertical ? height - y - 1 : y;
+		forEachRow(result, 0, height, (rowStart, rowEnd) -> {
+			for(int y = rowStart; y < rowEnd; y++) {
+				int yPix = vertical ? height - y - 1 : y;
 
-			for(int x = 0; x < width; x++) {
-				int xPix = horizontal ? width - x - 1 : x;
+				for(int x = 0; x < width; x++) {
+					int xPix = horizontal ? width - x - 1 : x;
 
-				T color = getPixel(x, y);
-				result.setPixel(xPix, yPix, color);
+					result.raster.copyPixel(xPix + yPix * width, raster, x + y * width);
+				}
 			}
-		}
+		});
 		return result;
 	}
 
@@ -340,8 +932,7 @@ public abstract class Bitmap<T> {
 					y1 = width - x - 1;
 				}
 
-				T color = getPixel(x, y);
-				result.setPixel(x1, y1, color);
+				result.raster.copyPixel(x1 + y1 * result.width, raster, x + y * width);
 			}
 		}
 		return result;
@@ -359,28 +950,12 @@ public abstract class Bitmap<T> {
 		int h = (int) Math.round(Math.abs(cos * height) + Math.abs(sin * width));
 		Bitmap<T> result = getSameTypeInstance(w, h, background);
 
-		double cx0 = width / 2.0;
-		double cy0 = height / 2.0;
-		double cx1 = w / 2.0;
-		double cy1 = h / 2.0;
-
-		for(int y = 0; y < result.height; y++) {
-			double yd = y - cy1;
-			for(int x = 0; x < result.width; x++) {
-				double xd = x - cx1;
+		// rotate around the center of this bitmap, then move it to the center of the result
+		AffineTransform transform = AffineTransform.getTranslateInstance(w / 2.0, h / 2.0);
+		transform.rotate(theta);
+		transform.translate(-width / 2.0, -height / 2.0);
 
-				int x0 = (int) Math.round(xd * cos - yd * sin + cx0);
-				int y0 = (int) Math.round(xd * sin + yd * cos + cy0);
-
-				// offset correction
-				if(theta >= Math.PI / 2 && theta <= Math.PI) y0--;
-				if(theta >= Math.PI && theta <= Math.PI / 2 * 3) x0--;
-
-				if(!(x0 < 0 || x0 >= width || y0 < 0 || y0 >= height)) {
-					result.setPixel(x, y, getPixel(x0, y0));
-				}
-			}
-		}
+		transform(this, result, transform, 0xff, false);
 		return result;
 	}
 
@@ -400,4 +975,38 @@ public abstract class Bitmap<T> {
 		return false;
 	}
 
+	protected interface RowTask {
+		void run(int y0, int y1);
+	}
+
+	private static class RowAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		// below this number of pixels, a band is not split
+		private static final int MIN_PIXELS = 1 << 14;
+
+		private final RowTask task;
+		private final int y0, y1;
+		private final int minRows;
+
+		private RowAction(RowTask task, int y0, int y1, int minRows) {
+			this.task = task;
+			this.y0 = y0;
+			this.y1 = y1;
+			this.minRows = minRows;
+		}
+
+		protected void compute() {
+			if(y1 - y0 <= minRows) {
+				task.run(y0, y1);
+			} else {
+				int mid = (y0 + y1) >>> 1;
+				invokeAll(new RowAction(task, y0, mid, minRows),
+				          new RowAction(task, mid, y1, minRows));
+			}
+		}
+
+	}
+
 }
@@ -2,16 +2,26 @@ package vulc.bitmap;
 
 import java.awt.image.BufferedImage;
 
+import vulc.bitmap.raster.BitRaster;
 import vulc.bitmap.raster.BoolRaster;
+import vulc.bitmap.raster.IntRaster;
+import vulc.bitmap.raster.Raster;
 
 public class BoolBitmap extends Bitmap<Boolean> {
 
+	// null if the raster is not a BitRaster
+	private final BitRaster bitRaster;
+
 	public BoolBitmap(int width, int height) {
-		super(Boolean.class, new BoolRaster(width, height));
+		this(new BitRaster(width, height));
 	}
 
 	public BoolBitmap(int width, int height, boolean[] raster) {
-		super(Boolean.class, new BoolRaster(width, height, raster));
+		this(new BoolRaster(width, height, raster));
+	}
+
+	public BoolBitmap(int width, int height, long[] raster) {
+		this(new BitRaster(width, height, raster));
 	}
 
 	public BoolBitmap(int width, int height, Boolean color) {
@@ -19,25 +29,67 @@ public class BoolBitmap extends Bitmap<Boolean> {
 		clear(color);
 	}
 
+	public BoolBitmap(Raster<Boolean> raster) {
+		super(Boolean.class, raster);
+		this.bitRaster = raster instanceof BitRaster ? (BitRaster) raster : null;
+	}
+
 	public BoolBitmap(BufferedImage img, int trueColor) {
 		this(img.getWidth(), img.getHeight());
 
-		int[] buffer = new int[width * height];
-		img.getRGB(0, 0, width, height, buffer, 0, width);
+		BitRaster bits = bitRaster;
 
-		for(int i = 0; i < buffer.length; i++) {
-			int color = buffer[i] & 0xffffff;
-			raster.setPixel(i, color == trueColor);
+		int type = img.getType();
+		int[] pixels = null;
+		if(type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+			pixels = IntBitmap.sharedPixelsOf(img);
+		}
+
+		if(pixels != null) {
+			for(int i = 0; i < pixels.length; i++) {
+				bits.setBool(i, (pixels[i] & 0xffffff) == trueColor);
+			}
+		} else {
+			// read a row at a time, instead of the whole image
+			int[] row = new int[width];
+			for(int y = 0; y < height; y++) {
+				img.getRGB(0, y, width, 1, row, 0, width);
+
+				for(int x = 0; x < width; x++) {
+					bits.setBool(x + y * width, (row[x] & 0xffffff) == trueColor);
+				}
+			}
 		}
 	}
 
 	public BoolBitmap(Bitmap<Integer> bitmap, int trueColor) {
 		this(bitmap.width, bitmap.height);
 
-		for(int i = 0; i < bitmap.size(); i++) {
-			int color = bitmap.raster.getPixel(i);
-			raster.setPixel(i, color == trueColor);
+		BitRaster bits = bitRaster;
+
+		int size = bitmap.size();
+		if(bitmap.raster instanceof IntRaster) {
+			IntRaster src = (IntRaster) bitmap.raster;
+			for(int i = 0; i < size; i++) {
+				bits.setBool(i, src.getInt(i) == trueColor);
+			}
+		} else {
+			for(int i = 0; i < size; i++) {
+				int color = bitmap.raster.getPixel(i);
+				bits.setBool(i, color == trueColor);
+			}
 		}
 	}
 
+	public boolean getBool(int x, int y) {
+		if(bitRaster != null) return bitRaster.getBool(x + y * width);
+		return raster.getPixel(x, y);
+	}
+
+	public void setBool(int x, int y, boolean color) {
+		if(bitRaster != null) bitRaster.setBool(x + y * width, color);
+		else raster.setPixel(x, y, color);
+		markDirty(x, y, 1, 1);
+	}
+
 }
@@ -1,15 +1,19 @@
 package vulc.bitmap;
 
 import vulc.bitmap.raster.ByteRaster;
+import vulc.bitmap.raster.Raster;
 
 public class ByteBitmap extends Bitmap<Byte> {
 
+	// null if the raster is not an ByteRaster
+	private final ByteRaster byteRaster;
+
 	public ByteBitmap(int width, int height) {
-		super(Byte.class, new ByteRaster(width, height));
+		this(new ByteRaster(width, height));
 	}
 
 	public ByteBitmap(int width, int height, byte[] raster) {
-		super(Byte.class, new ByteRaster(width, height, raster));
+		this(new ByteRaster(width, height, raster));
 	}
 
 	public ByteBitmap(int width, int height, Byte color) {
@@ -17,4 +21,70 @@ public class ByteBitmap extends Bitmap<Byte> {
 		clear(color);
 	}
 
+	public ByteBitmap(Raster<Byte> raster) {
+		super(Byte.class, raster);
+		this.byteRaster = raster instanceof ByteRaster ? (ByteRaster) raster : null;
+	}
+
+	public byte getByte(int x, int y) {
+		if(byteRaster != null) return byteRaster.getByte(x + y * width);
+		return raster.getPixel(x, y);
+	}
+
+	public void setByte(int x, int y, byte color) {
+		if(byteRaster != null) byteRaster.setByte(x + y * width, color);
+		else raster.setPixel(x, y, color);
+		markDirty(x, y, 1, 1);
+	}
+
+	protected void checkBilinear() {
+	}
+
+	protected void sampleRow(Bitmap<Byte> line, int length, long u, long v, long du, long dv, boolean bilinear) {
+		ByteBitmap dst = (ByteBitmap) line;
+
+		if(!bilinear) {
+			for(int i = 0; i < length; i++) {
+				dst.setByte(i, 0, getByte((int) (u >> 16), (int) (v >> 16)));
+				u += du;
+				v += dv;
+			}
+			return;
+		}
+
+		// the four nearest pixels are the ones around (u - 0.5, v - 0.5)
+		u -= 0x8000;
+		v -= 0x8000;
+		for(int i = 0; i < length; i++) {
+			int x0 = (int) (u >> 16);
+			int y0 = (int) (v >> 16);
+			int fx = (int) (u >> 8) & 0xff;
+			int fy = (int) (v >> 8) & 0xff;
+
+			// on the edges, the missing pixels are replaced by the nearest ones
+			if(x0 < 0) {
+				x0 = 0;
+				fx = 0;
+			}
+			if(y0 < 0) {
+				y0 = 0;
+				fy = 0;
+			}
+			int x1 = x0 + 1 < width ? x0 + 1 : x0;
+			int y1 = y0 + 1 < height ? y0 + 1 : y0;
+
+			// the values are unsigned
+			int top = lerp(getByte(x0, y0) & 0xff, getByte(x1, y0) & 0xff, fx);
+			int bottom = lerp(getByte(x0, y1) & 0xff, getByte(x1, y1) & 0xff, fx);
+			dst.setByte(i, 0, (byte) lerp(top, bottom, fy));
+
+			u += du;
+			v += dv;
+		}
+	}
+
+	private static int lerp(int a, int b, int f) {
+		return (a * (0x100 - f) + b * f) >> 8;
+	}
+
 }
@@ -0,0 +1,286 @@
+package vulc.bitmap;
+
+import java.util.Arrays;
+
+import vulc.bitmap.raster.IntBlender;
+import vulc.bitmap.raster.IntRaster;
+
+/**
+ * ColorQuantizer chooses the palette of an IndexedBitmap converted from an
+ * int bitmap and maps its pixels to the palette.<br>
+ * If the image has few enough colors, they are the palette. Otherwise the
+ * colors are reduced with median cut: the colors, with 5 bits per
+ * channel, are split into boxes along their widest channel until there
+ * are enough boxes, and each box becomes the average of its colors.
+ *
+ * @author Vulcalien
+ */
+final class ColorQuantizer {
+
+	private static final int BUCKETS = 1 << 15;
+
+	private final Bitmap<Integer> source;
+	private final boolean premultiplied;
+	private final int[] row;
+
+	ColorQuantizer(Bitmap<Integer> source) {
+		this.source = source;
+		this.premultiplied = source instanceof ArgbBitmap;
+		this.row = new int[source.width];
+	}
+
+	// returns the RGB colors of the row y, without the alpha
+	private int[] readRow(int y) {
+		int w = source.width;
+		if(source.raster instanceof IntRaster) {
+			System.arraycopy(((IntRaster) source.raster).getArray(), y * w, row, 0, w);
+		} else {
+			for(int x = 0; x < w; x++) {
+				row[x] = source.raster.getPixel(x + y * w);
+			}
+		}
+
+		for(int x = 0; x < w; x++) {
+			int color = row[x];
+			if(premultiplied) color = IntBlender.unpremultiply(color);
+			row[x] = color & 0xffffff;
+		}
+		return row;
+	}
+
+	/**
+	 * Writes the index of each pixel into indices and returns the colors of
+	 * the image, in the order they first appear, or null if there are more
+	 * than maxColors.
+	 */
+	int[] extract(byte[] indices, int maxColors) {
+		// open addressing: the table is at least twice as big as the colors
+		int size = Integer.highestOneBit(maxColors) * 4;
+		int[] keys = new int[size];
+		byte[] values = new byte[size];
+		Arrays.fill(keys, -1);
+
+		int[] palette = new int[maxColors];
+		int nColors = 0;
+
+		int w = source.width;
+		for(int y = 0; y < source.height; y++) {
+			int[] row = readRow(y);
+			for(int x = 0; x < w; x++) {
+				int color = row[x];
+
+				int slot = (color * 0x9e3779b1) >>> 22 & (size - 1);
+				while(keys[slot] != color && keys[slot] != -1) {
+					slot = (slot + 1) & (size - 1);
+				}
+				if(keys[slot] == -1) {
+					if(nColors == maxColors) return null;
+
+					keys[slot] = color;
+					values[slot] = (byte) nColors;
+					palette[nColors++] = color;
+				}
+				indices[x + y * w] = values[slot];
+			}
+		}
+		return Arrays.copyOf(palette, nColors);
+	}
+
+	/**
+	 * Reduces the colors of the image to maxColors, writes the index of
+	 * each pixel into indices and returns the palette.
+	 */
+	int[] medianCut(byte[] indices, int maxColors) {
+		int[] counts = new int[BUCKETS];
+		long[] rSums = new long[BUCKETS];
+		long[] gSums = new long[BUCKETS];
+		long[] bSums = new long[BUCKETS];
+
+		int w = source.width;
+		for(int y = 0; y < source.height; y++) {
+			int[] row = readRow(y);
+			for(int x = 0; x < w; x++) {
+				int color = row[x];
+				int bucket = bucketOf(color);
+
+				counts[bucket]++;
+				rSums[bucket] += color >> 16 & 0xff;
+				gSums[bucket] += color >> 8 & 0xff;
+				bSums[bucket] += color & 0xff;
+			}
+		}
+
+		// the buckets that have pixels
+		int n = 0;
+		int[] buckets = new int[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++) {
+			if(counts[i] != 0) buckets[n++] = i;
+		}
+
+		// each box is a range of buckets
+		int[] boxStarts = new int[maxColors];
+		int[] boxEnds = new int[maxColors];
+		long[] boxScores = new long[maxColors];
+		int[] boxChannels = new int[maxColors];
+
+		int nBoxes = 1;
+		boxEnds[0] = n;
+		measureBox(buckets, counts, 0, n, boxScores, boxChannels, 0);
+
+		while(nBoxes < maxColors) {
+			// split the box with the most pixels times its widest side
+			int box = -1;
+			for(int i = 0; i < nBoxes; i++) {
+				if(boxScores[i] > 0 && (box == -1 || boxScores[i] > boxScores[box])) box = i;
+			}
+			if(box == -1) break; // each box has one bucket
+
+			int start = boxStarts[box];
+			int end = boxEnds[box];
+			int shift = boxChannels[box];
+
+			// sort the buckets by the channel: the bucket is kept in the low bits
+			for(int i = start; i < end; i++) {
+				buckets[i] |= (buckets[i] >> shift & 0x1f) << 15;
+			}
+			Arrays.sort(buckets, start, end);
+
+			int population = 0;
+			for(int i = start; i < end; i++) {
+				buckets[i] &= BUCKETS - 1;
+				population += counts[buckets[i]];
+			}
+
+			// the first bucket after half of the pixels, leaving at least one on each side
+			int split = start + 1;
+			int half = counts[buckets[start]];
+			while(split < end - 1 && half + counts[buckets[split]] <= population / 2) {
+				half += counts[buckets[split]];
+				split++;
+			}
+
+			boxEnds[box] = split;
+			boxStarts[nBoxes] = split;
+			boxEnds[nBoxes] = end;
+			measureBox(buckets, counts, start, split, boxScores, boxChannels, box);
+			measureBox(buckets, counts, split, end, boxScores, boxChannels, nBoxes);
+			nBoxes++;
+		}
+
+		// each box becomes the average of its colors
+		int[] palette = new int[nBoxes];
+		byte[] bucketIndices = new byte[BUCKETS];
+		for(int b = 0; b < nBoxes; b++) {
+			long count = 0, r = 0, g = 0, bl = 0;
+			for(int i = boxStarts[b]; i < boxEnds[b]; i++) {
+				int bucket = buckets[i];
+				count += counts[bucket];
+				r += rSums[bucket];
+				g += gSums[bucket];
+				bl += bSums[bucket];
+				bucketIndices[bucket] = (byte) b;
+			}
+			palette[b] = (int) ((r + count / 2) / count) << 16
+			             | (int) ((g + count / 2) / count) << 8
+			             | (int) ((bl + count / 2) / count);
+		}
+
+		for(int y = 0; y < source.height; y++) {
+			int[] row = readRow(y);
+			for(int x = 0; x < w; x++) {
+				indices[x + y * w] = bucketIndices[bucketOf(row[x])];
+			}
+		}
+		return palette;
+	}
+
+	// the score is 0 if the box cannot be split
+	private static void measureBox(int[] buckets, int[] counts, int start, int end,
+	                               long[] scores, int[] channels, int box) {
+		int rMin = 31, gMin = 31, bMin = 31;
+		int rMax = 0, gMax = 0, bMax = 0;
+		long population = 0;
+		for(int i = start; i < end; i++) {
+			int bucket = buckets[i];
+			int r = bucket >> 10 & 0x1f;
+			int g = bucket >> 5 & 0x1f;
+			int b = bucket & 0x1f;
+
+			rMin = Math.min(rMin, r);
+			rMax = Math.max(rMax, r);
+			gMin = Math.min(gMin, g);
+			gMax = Math.max(gMax, g);
+			bMin = Math.min(bMin, b);
+			bMax = Math.max(bMax, b);
+			population += counts[bucket];
+		}
+
+		// the shift of the widest channel in the bucket
+		int range = rMax - rMin;
+		int shift = 10;
+		if(gMax - gMin > range) {
+			range = gMax - gMin;
+			shift = 5;
+		}
+		if(bMax - bMin > range) {
+			range = bMax - bMin;
+			shift = 0;
+		}
+
+		scores[box] = end - start > 1 ? population * range : 0;
+		channels[box] = shift;
+	}
+
+	private static int bucketOf(int rgb) {
+		return (rgb >> 9 & 0x7c00) | (rgb >> 6 & 0x3e0) | (rgb >> 3 & 0x1f);
+	}
+
+	/**
+	 * Writes into indices the index of the nearest color of the palette to
+	 * each pixel.
+	 */
+	void map(byte[] indices, int[] palette) {
+		// the last colors that were mapped, by hash
+		// the color 0 has hash 0, so the empty key there is -1 instead of 0
+		int[] cacheKeys = new int[4096];
+		byte[] cacheValues = new byte[4096];
+		cacheKeys[0] = -1;
+
+		int w = source.width;
+		for(int y = 0; y < source.height; y++) {
+			int[] row = readRow(y);
+			for(int x = 0; x < w; x++) {
+				int color = row[x];
+
+				int hash = (color * 0x9e3779b1) >>> 20;
+				if(cacheKeys[hash] != color) {
+					cacheKeys[hash] = color;
+					cacheValues[hash] = (byte) nearest(palette, color);
+				}
+				indices[x + y * w] = cacheValues[hash];
+			}
+		}
+	}
+
+	static int nearest(int[] palette, int rgb) {
+		int r = rgb >> 16 & 0xff;
+		int g = rgb >> 8 & 0xff;
+		int b = rgb & 0xff;
+
+		int best = 0;
+		int bestDistance = Integer.MAX_VALUE;
+		for(int i = 0; i < palette.length; i++) {
+			int dr = (palette[i] >> 16 & 0xff) - r;
+			int dg = (palette[i] >> 8 & 0xff) - g;
+			int db = (palette[i] & 0xff) - b;
+
+			int distance = dr * dr + dg * dg + db * db;
+			if(distance < bestDistance) {
+				best = i;
+				bestDistance = distance;
+			}
+		}
+		return best;
+	}
+
+}
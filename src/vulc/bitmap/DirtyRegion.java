@@ -0,0 +1,169 @@
+package vulc.bitmap;
+
+import java.awt.Rectangle;
+
+/**
+ * DirtyRegion keeps the rectangles of a bitmap that have been changed.<br>
+ * Rectangles that overlap or touch are merged and, if there are more than
+ * maxRectangles of them, the two that grow the least when merged are
+ * joined, so the list stays short.<br>
+ * Adding an area that is already dirty does not lock, so marking single
+ * pixels inside an area marked by a bulk operation is cheap.
+ *
+ * @author Vulcalien
+ */
+public class DirtyRegion {
+
+	private final int maxRectangles;
+
+	// x0, y0, x1, y1 (exclusive) of each rectangle
+	// the array is replaced, never modified, so it can be read without locking
+	private volatile int[] rects = new int[0];
+
+	public DirtyRegion(int maxRectangles) {
+		if(maxRectangles < 1) throw new IllegalArgumentException("maxRectangles must be positive");
+		this.maxRectangles = maxRectangles;
+	}
+
+	public DirtyRegion() {
+		this(16);
+	}
+
+	private static boolean contains(int[] rects, int x0, int y0, int x1, int y1) {
+		for(int i = 0; i < rects.length; i += 4) {
+			if(rects[i] <= x0 && rects[i + 1] <= y0 && rects[i + 2] >= x1 && rects[i + 3] >= y1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the rectangle from (x0, y0) to (x1, y1), exclusive.
+	 */
+	public void add(int x0, int y0, int x1, int y1) {
+		if(x0 >= x1 || y0 >= y1) return;
+		if(contains(rects, x0, y0, x1, y1)) return;
+
+		synchronized(this) {
+			int[] old = rects;
+			if(contains(old, x0, y0, x1, y1)) return;
+
+			int[] result = new int[old.length + 4];
+			int n = 0;
+
+			// merge the rectangles that overlap or touch the new one, until none is left
+			boolean merged = true;
+			boolean[] removed = new boolean[old.length / 4];
+			while(merged) {
+				merged = false;
+				for(int i = 0; i < old.length; i += 4) {
+					if(removed[i / 4]) continue;
+					if(old[i] > x1 || old[i + 2] < x0 || old[i + 1] > y1 || old[i + 3] < y0) continue;
+
+					x0 = Math.min(x0, old[i]);
+					y0 = Math.min(y0, old[i + 1]);
+					x1 = Math.max(x1, old[i + 2]);
+					y1 = Math.max(y1, old[i + 3]);
+					removed[i / 4] = true;
+					merged = true;
+				}
+			}
+			for(int i = 0; i < old.length; i += 4) {
+				if(removed[i / 4]) continue;
+				System.arraycopy(old, i, result, n, 4);
+				n += 4;
+			}
+			result[n++] = x0;
+			result[n++] = y0;
+			result[n++] = x1;
+			result[n++] = y1;
+
+			while(n / 4 > maxRectangles) {
+				n = joinCheapestPair(result, n);
+			}
+
+			int[] newRects = new int[n];
+			System.arraycopy(result, 0, newRects, 0, n);
+			rects = newRects;
+		}
+	}
+
+	// joins the two rectangles whose union adds the least area
+	private static int joinCheapestPair(int[] r, int n) {
+		long bestCost = Long.MAX_VALUE;
+		int a = 0, b = 4;
+		for(int i = 0; i < n; i += 4) {
+			for(int j = i + 4; j < n; j += 4) {
+				long w = Math.max(r[i + 2], r[j + 2]) - Math.min(r[i], r[j]);
+				long h = Math.max(r[i + 3], r[j + 3]) - Math.min(r[i + 1], r[j + 1]);
+				long cost = w * h - area(r, i) - area(r, j);
+				if(cost < bestCost) {
+					bestCost = cost;
+					a = i;
+					b = j;
+				}
+			}
+		}
+		r[a] = Math.min(r[a], r[b]);
+		r[a + 1] = Math.min(r[a + 1], r[b + 1]);
+		r[a + 2] = Math.max(r[a + 2], r[b + 2]);
+		r[a + 3] = Math.max(r[a + 3], r[b + 3]);
+
+		// the last rectangle takes the place of the removed one
+		System.arraycopy(r, n - 4, r, b, 4);
+		return n - 4;
+	}
+
+	private static long area(int[] r, int i) {
+		return (long) (r[i + 2] - r[i]) * (r[i + 3] - r[i + 1]);
+	}
+
+	public boolean isEmpty() {
+		return rects.length == 0;
+	}
+
+	public Rectangle[] getRectangles() {
+		int[] r = rects;
+
+		Rectangle[] result = new Rectangle[r.length / 4];
+		for(int i = 0; i < result.length; i++) {
+			int j = i * 4;
+			result[i] = new Rectangle(r[j], r[j + 1], r[j + 2] - r[j], r[j + 3] - r[j + 1]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the smallest rectangle that contains all the dirty ones, or
+	 * null if the region is empty.
+	 */
+	public Rectangle getBounds() {
+		int[] r = rects;
+		if(r.length == 0) return null;
+
+		int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE;
+		int x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+		for(int i = 0; i < r.length; i += 4) {
+			x0 = Math.min(x0, r[i]);
+			y0 = Math.min(y0, r[i + 1]);
+			x1 = Math.max(x1, r[i + 2]);
+			y1 = Math.max(y1, r[i + 3]);
+		}
+		return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+	}
+
+	/**
+	 * Returns the dirty rectangles and empties the region.
+	 */
+	public synchronized Rectangle[] reset() {
+		Rectangle[] result = getRectangles();
+		rects = new int[0];
+		return result;
+	}
+
+	public synchronized void clear() {
+		rects = new int[0];
+	}
+
+}
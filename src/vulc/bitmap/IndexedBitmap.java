@@ -0,0 +1,135 @@
+package vulc.bitmap;
+
+import vulc.bitmap.raster.ByteRaster;
+import vulc.bitmap.raster.Raster;
+
+/**
+ * IndexedBitmap is a ByteBitmap whose pixels are indices into a palette of
+ * up to 256 RGB colors: it uses a byte per pixel instead of the four of an
+ * IntBitmap. It is drawn into an IntBitmap with IntBitmap.drawIndexed.<br>
+ * The palette is not copied: changing it, or setting a new one, changes
+ * the colors of the bitmap without touching its pixels. The bitmaps
+ * created from this one, like the result of getScaled or the views, use
+ * the same palette.<br>
+ * The indices of the pixels must be less than the size of the palette.
+ * Since the pixels are indices, the bilinear filter is not supported: the
+ * transforms throw IllegalArgumentException before drawing anything.
+ *
+ * @author Vulcalien
+ */
+public class IndexedBitmap extends ByteBitmap {
+
+	protected int[] palette;
+
+	/**
+	 * Creates a bitmap whose palette contains the 256 gray levels, so the
+	 * indices are the levels.
+	 */
+	public IndexedBitmap(int width, int height) {
+		this(width, height, grayPalette());
+	}
+
+	public IndexedBitmap(int width, int height, int[] palette) {
+		this(new ByteRaster(width, height), palette);
+	}
+
+	public IndexedBitmap(int width, int height, byte[] raster, int[] palette) {
+		this(new ByteRaster(width, height, raster), palette);
+	}
+
+	public IndexedBitmap(int width, int height, Byte color) {
+		this(width, height);
+		clear(color);
+	}
+
+	public IndexedBitmap(Raster<Byte> raster) {
+		this(raster, grayPalette());
+	}
+
+	public IndexedBitmap(Raster<Byte> raster, int[] palette) {
+		super(raster);
+		setPalette(palette);
+	}
+
+	/**
+	 * Converts the bitmap. If it has at most maxColors colors, they become
+	 * the palette and the conversion is exact. Otherwise the colors are
+	 * reduced to maxColors, see ColorQuantizer.<br>
+	 * The alpha of the pixels is ignored.
+	 */
+	public IndexedBitmap(Bitmap<Integer> bitmap, int maxColors) {
+		this(bitmap.width, bitmap.height);
+		if(maxColors < 1 || maxColors > 256) {
+			throw new IllegalArgumentException("maxColors must be between 1 and 256: " + maxColors);
+		}
+
+		ColorQuantizer quantizer = new ColorQuantizer(bitmap);
+		byte[] indices = ((ByteRaster) raster).getArray();
+
+		int[] palette = quantizer.extract(indices, maxColors);
+		if(palette == null) palette = quantizer.medianCut(indices, maxColors);
+		this.palette = palette;
+	}
+
+	/**
+	 * Converts the bitmap, replacing each color with the nearest color of
+	 * the palette. The alpha of the pixels is ignored.
+	 */
+	public IndexedBitmap(Bitmap<Integer> bitmap, int[] palette) {
+		this(bitmap.width, bitmap.height, palette);
+
+		ColorQuantizer quantizer = new ColorQuantizer(bitmap);
+		quantizer.map(((ByteRaster) raster).getArray(), palette);
+	}
+
+	private static int[] grayPalette() {
+		int[] palette = new int[256];
+		for(int i = 0; i < palette.length; i++) {
+			palette[i] = i << 16 | i << 8 | i;
+		}
+		return palette;
+	}
+
+	public int[] getPalette() {
+		return palette;
+	}
+
+	public void setPalette(int[] palette) {
+		if(palette.length == 0 || palette.length > 256) {
+			throw new IllegalArgumentException("The palette must have between 1 and 256 colors: " + palette.length);
+		}
+		this.palette = palette;
+	}
+
+	/**
+	 * Returns the RGB color of the pixel.
+	 */
+	public int getColor(int x, int y) {
+		return palette[getByte(x, y) & 0xff];
+	}
+
+	public Bitmap<Byte> getSameTypeInstance(int width, int height) {
+		IndexedBitmap result = (IndexedBitmap) super.getSameTypeInstance(width, height);
+		result.palette = palette;
+		return result;
+	}
+
+	protected Bitmap<Byte> getSameTypeInstance(Raster<Byte> raster) {
+		IndexedBitmap result = (IndexedBitmap) super.getSameTypeInstance(raster);
+		result.palette = palette;
+		return result;
+	}
+
+	protected Bitmap<Byte> getSameTypeInstance(int width, int height, Byte color) {
+		IndexedBitmap result = (IndexedBitmap) super.getSameTypeInstance(width, height, color);
+		result.palette = palette;
+		return result;
+	}
+
+	protected void checkBilinear() {
+		// interpolating indices would mix unrelated colors
+		throw new IllegalArgumentException("The pixels of an IndexedBitmap are palette indices, "
+		                                   + "so they cannot be interpolated by the bilinear filter");
+	}
+
+}
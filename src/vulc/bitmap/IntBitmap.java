@@ -1,17 +1,28 @@
 package vulc.bitmap;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
+import vulc.bitmap.metrics.RenderMetrics;
+import vulc.bitmap.raster.IntBlender;
 import vulc.bitmap.raster.IntRaster;
+import vulc.bitmap.raster.Raster;
 
 public class IntBitmap extends Bitmap<Integer> {
 
+	// null if the raster is not an IntRaster
+	protected final IntRaster intRaster;
+
 	public IntBitmap(int width, int height) {
-		super(Integer.class, new IntRaster(width, height));
+		this(new IntRaster(width, height));
 	}
 
 	public IntBitmap(int width, int height, int[] raster) {
-		super(Integer.class, new IntRaster(width, height, raster));
+		this(new IntRaster(width, height, raster));
 	}
 
 	public IntBitmap(int width, int height, Integer color) {
@@ -19,37 +30,365 @@ public class IntBitmap extends Bitmap<Integer> {
 		clear(color);
 	}
 
+	public IntBitmap(Raster<Integer> raster) {
+		super(Integer.class, raster);
+		this.intRaster = raster instanceof IntRaster ? (IntRaster) raster : null;
+	}
+
+	/**
+	 * Creates a bitmap from a copy of the pixels of the image, without the
+	 * alpha. Use wrap to share the pixels instead.
+	 */
 	public IntBitmap(BufferedImage img) {
-		this(img.getWidth(), img.getHeight());
+		this(new IntRaster(img.getWidth(), img.getHeight(), rgbPixelsOf(img)));
+	}
+
+	private static int[] rgbPixelsOf(BufferedImage img) {
+		int[] pixels = null;
+		if(img.getType() == BufferedImage.TYPE_INT_RGB) {
+			pixels = sharedPixelsOf(img);
+		}
+		pixels = pixels != null ? pixels.clone() : argbPixelsOf(img);
+
+		for(int i = 0; i < pixels.length; i++) {
+			pixels[i] &= 0xffffff;
+		}
+		return pixels;
+	}
+
+	/**
+	 * Returns a bitmap that uses the int[] of a TYPE_INT_RGB image, so
+	 * changing one changes the other. Other images are copied, like the
+	 * constructor does.<br>
+	 * The image is not changed. Java2D ignores the high byte of TYPE_INT_RGB
+	 * pixels, but may set it when drawing, and the bitmap sees it as part
+	 * of the color.
+	 */
+	public static IntBitmap wrap(BufferedImage img) {
+		if(img.getType() == BufferedImage.TYPE_INT_RGB) {
+			int[] pixels = sharedPixelsOf(img);
+			if(pixels != null) return new IntBitmap(img.getWidth(), img.getHeight(), pixels);
+		}
+		return new IntBitmap(img);
+	}
 
-		int[] buffer = new int[width * height];
-		img.getRGB(0, 0, width, height, buffer, 0, width);
+	/**
+	 * Returns the int[] of the image if it contains exactly its pixels,
+	 * one per int and row after row, otherwise null.<br>
+	 * Java2D can no longer accelerate an image once its array is taken.
+	 */
+	static int[] sharedPixelsOf(BufferedImage img) {
+		java.awt.image.Raster raster = img.getRaster();
+		if(!(raster.getDataBuffer() instanceof DataBufferInt)) return null;
+		if(!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) return null;
 
-		for(int i = 0; i < buffer.length; i++) {
-			int color = buffer[i] & 0xffffff;
-			raster.setPixel(i, color);
+		DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+		SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+
+		if(buffer.getNumBanks() != 1 || buffer.getOffset() != 0) return null;
+		if(raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) return null;
+		if(model.getScanlineStride() != img.getWidth()) return null;
+
+		int[] pixels = buffer.getData();
+		return pixels.length == img.getWidth() * img.getHeight() ? pixels : null;
+	}
+
+	/**
+	 * Returns a new array containing the non-premultiplied ARGB pixels of
+	 * the image.
+	 */
+	static int[] argbPixelsOf(BufferedImage img) {
+		int w = img.getWidth();
+		int h = img.getHeight();
+
+		int type = img.getType();
+		if(type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) {
+			int[] pixels = sharedPixelsOf(img);
+			if(pixels != null) {
+				pixels = pixels.clone();
+				if(type == BufferedImage.TYPE_INT_RGB) {
+					for(int i = 0; i < pixels.length; i++) {
+						pixels[i] |= 0xff000000;
+					}
+				}
+				return pixels;
+			}
+		}
+		return img.getRGB(0, 0, w, h, new int[w * h], 0, w);
+	}
+
+	/**
+	 * Returns a TYPE_INT_RGB image that uses the same int[] as the bitmap,
+	 * so it can be passed to Java2D or ImageIO without copying the pixels.
+	 * Changing one changes the other.<br>
+	 * If the raster is not an IntRaster, the pixels are copied.
+	 */
+	public BufferedImage asBufferedImage() {
+		return asBufferedImage(new DirectColorModel(24, 0xff0000, 0xff00, 0xff));
+	}
+
+	protected BufferedImage asBufferedImage(DirectColorModel model) {
+		int[] pixels;
+		if(intRaster != null) {
+			pixels = intRaster.getArray();
+		} else {
+			IntRaster copy = new IntRaster(width, height);
+			copy.copyPixels(0, raster, 0, size());
+			pixels = copy.getArray();
 		}
+
+		DataBufferInt buffer = new DataBufferInt(pixels, pixels.length);
+		WritableRaster imgRaster = java.awt.image.Raster.createPackedRaster(buffer, width, height, width, model.getMasks(), null);
+		return new BufferedImage(model, imgRaster, model.isAlphaPremultiplied(), null);
+	}
+
+	public int getInt(int x, int y) {
+		if(intRaster != null) return intRaster.getInt(x + y * width);
+		return raster.getPixel(x, y);
+	}
+
+	public void setInt(int x, int y, int color) {
+		if(intRaster != null) intRaster.setInt(x + y * width, color);
+		else raster.setPixel(x, y, color);
+		markDirty(x, y, 1, 1);
 	}
 
 	public void setPixel(int x, int y, Integer color, int transparency) {
-		int oldColor = getPixel(x, y);
-		setPixel(x, y, compositColors(color, oldColor, transparency));
+		setInt(x, y, color, transparency);
 	}
 
-	protected int compositColors(int newColor, int oldColor, int transparency) {
-		int r0 = (newColor >> 16) & 0xff;
-		int g0 = (newColor >> 8) & 0xff;
-		int b0 = newColor & 0xff;
+	public void setInt(int x, int y, int color, int transparency) {
+		if(replacesInt(color, transparency)) setInt(x, y, color);
+		else setInt(x, y, compositColors(color, getInt(x, y), transparency));
+	}
+
+	public void draw(Bitmap<Integer> image, int transparency, int x, int y) {
+		if(image instanceof ArgbBitmap) {
+			drawArgb((ArgbBitmap) image, transparency, x, y);
+		} else {
+			super.draw(image, transparency, x, y);
+		}
+	}
+
+	protected void drawArgb(ArgbBitmap image, int transparency, int x, int y) {
+		int alpha = transparency & 0xff;
+
+		int xStart = Math.max(0, -x);
+		int yStart = Math.max(0, -y);
+
+		int xEnd = Math.min(image.width, width - x);
+		int yEnd = Math.min(image.height, height - y);
+
+		if(xStart >= xEnd) return;
+
+		markDirty(xStart + x, yStart + y, xEnd - xStart, yEnd - yStart);
+
+		long startTime = RenderMetrics.start();
+
+		RowTask task = (rowStart, rowEnd) -> {
+			for(int yi = rowStart; yi < rowEnd; yi++) {
+				compositeRow(xStart + x, yi + y, image, xStart, yi, xEnd - xStart, alpha);
+			}
+		};
+
+		// drawing a bitmap into itself depends on the order of the rows
+		if(rootOf(image.raster) == rootOf(raster)) {
+			task.run(yStart, yEnd);
+		} else {
+			forEachRow(this, yStart, yEnd, task);
+		}
+		RenderMetrics.report(startTime, this, RenderMetrics.DRAW, 1, RenderMetrics.area(this, x, y, image.width, image.height), alpha);
+	}
+
+	/**
+	 * Draws the image, replacing each index with its color in the palette
+	 * of the image. The pixels whose color is one of the transparent colors
+	 * of this bitmap are not drawn.
+	 */
+	public void drawIndexed(IndexedBitmap image, int transparency, int x, int y) {
+		transparency &= 0xff;
+
+		int xStart = Math.max(0, -x);
+		int yStart = Math.max(0, -y);
+
+		int xEnd = Math.min(image.width, width - x);
+		int yEnd = Math.min(image.height, height - y);
+
+		if(xStart >= xEnd) return;
+		markDirty(xStart + x, yStart + y, xEnd - xStart, yEnd - yStart);
+
+		long startTime = RenderMetrics.start();
 
-		int r1 = (oldColor >> 16) & 0xff;
-		int g1 = (oldColor >> 8) & 0xff;
-		int b1 = oldColor & 0xff;
+		int[] palette = image.getPalette();
+		int alpha = transparency;
+		forEachRow(this, yStart, yEnd, (rowStart, rowEnd) -> {
+			for(int yi = rowStart; yi < rowEnd; yi++) {
+				int yPix = yi + y;
 
-		int r = (r0 * transparency + r1 * (0xff - transparency)) / 0xff;
-		int g = (g0 * transparency + g1 * (0xff - transparency)) / 0xff;
-		int b = (b0 * transparency + b1 * (0xff - transparency)) / 0xff;
+				x_for:
+				for(int xi = xStart; xi < xEnd; xi++) {
+					int rgb = palette[image.getByte(xi, yi) & 0xff] & 0xffffff;
+					for(int j = 0; j < transparentColors.length; j++) {
+						if(rgb == transparentColors[j]) continue x_for;
+					}
 
-		return r << 16 | g << 8 | b;
+					int color = paletteColor(rgb);
+					int i = xi + x + yPix * width;
+					if(intRaster == null) {
+						if(alpha == 0xff) raster.setPixel(i, color);
+						else raster.setPixel(i, compositColors(color, raster.getPixel(i), alpha));
+					} else {
+						if(alpha == 0xff) intRaster.setInt(i, color);
+						else intRaster.setInt(i, compositColors(color, intRaster.getInt(i), alpha));
+					}
+				}
+			}
+		});
+		RenderMetrics.report(startTime, this, RenderMetrics.DRAW, 1, RenderMetrics.area(this, x, y, image.width, image.height), alpha);
+	}
+
+	public void drawIndexed(IndexedBitmap image, int x, int y) {
+		this.drawIndexed(image, 0xff, x, y);
+	}
+
+	// the value stored in this bitmap for an opaque color of a palette
+	protected int paletteColor(int rgb) {
+		return rgb;
+	}
+
+	// composites a row of premultiplied pixels, keeping this bitmap without alpha
+	protected void compositeRow(int x, int y, Bitmap<Integer> image, int xi, int yi, int length, int transparency) {
+		if(intRaster == null) {
+			for(int i = 0; i < length; i++) {
+				int color = IntBlender.composite(image.getPixel(xi + i, yi), getInt(x + i, y), transparency);
+				setInt(x + i, y, color & 0xffffff);
+			}
+			return;
+		}
+		int i = x + y * width;
+		intRaster.compositePixels(i, image.raster, xi + yi * image.width, length, transparency);
+		for(int j = i; j < i + length; j++) {
+			intRaster.setInt(j, intRaster.getInt(j) & 0xffffff);
+		}
+	}
+
+	protected void drawRow(int x, int y, Bitmap<Integer> image, int xi, int yi, int length, int transparency) {
+		if(image instanceof ArgbBitmap) {
+			compositeRow(x, y, image, xi, yi, length, transparency);
+		} else {
+			super.drawRow(x, y, image, xi, yi, length, transparency);
+		}
+	}
+
+	protected void checkBilinear() {
+	}
+
+	protected void sampleRow(Bitmap<Integer> line, int length, long u, long v, long du, long dv, boolean bilinear) {
+		IntBitmap dst = (IntBitmap) line;
+
+		if(!bilinear) {
+			for(int i = 0; i < length; i++) {
+				dst.setInt(i, 0, getInt((int) (u >> 16), (int) (v >> 16)));
+				u += du;
+				v += dv;
+			}
+			return;
+		}
+
+		// the four nearest pixels are the ones around (u - 0.5, v - 0.5)
+		u -= 0x8000;
+		v -= 0x8000;
+		for(int i = 0; i < length; i++) {
+			int x0 = (int) (u >> 16);
+			int y0 = (int) (v >> 16);
+			int fx = (int) (u >> 8) & 0xff;
+			int fy = (int) (v >> 8) & 0xff;
+
+			// on the edges, the missing pixels are replaced by the nearest ones
+			if(x0 < 0) {
+				x0 = 0;
+				fx = 0;
+			}
+			if(y0 < 0) {
+				y0 = 0;
+				fy = 0;
+			}
+			int x1 = x0 + 1 < width ? x0 + 1 : x0;
+			int y1 = y0 + 1 < height ? y0 + 1 : y0;
+
+			int top = lerp(getInt(x0, y0), getInt(x1, y0), fx);
+			int bottom = lerp(getInt(x0, y1), getInt(x1, y1), fx);
+			dst.setInt(i, 0, lerp(top, bottom, fy));
+
+			u += du;
+			v += dv;
+		}
+	}
+
+	// (a * (256 - f) + b * f) / 256 for each of the four channels
+	private static int lerp(int a, int b, int f) {
+		int g = 0x100 - f;
+
+		int rb = ((a & 0xff00ff) * g + (b & 0xff00ff) * f) >>> 8;
+		int ag = ((a >>> 8) & 0xff00ff) * g + ((b >>> 8) & 0xff00ff) * f;
+		return (rb & 0xff00ff) | (ag & 0xff00ff00);
+	}
+
+	protected void drawRun(RLESprite<Integer> sprite, int r, int x, int y, int length, int transparency) {
+		if(intRaster == null) {
+			super.drawRun(sprite, r, x, y, length, transparency);
+			return;
+		}
+		int color = sprite.intColors[r];
+		int i = x + y * width;
+		if(replacesInt(color, transparency)) {
+			Arrays.fill(intRaster.getArray(), i, i + length, color);
+		} else {
+			blendInts(i, i + length, color, transparency);
+		}
+	}
+
+	protected boolean replaces(Integer color, int transparency) {
+		return replacesInt(color, transparency);
+	}
+
+	// like replaces, without boxing the color
+	protected boolean replacesInt(int color, int transparency) {
+		return transparency == 0xff;
+	}
+
+	protected void blendSpan(int x, int y, int length, Integer color, int transparency) {
+		if(intRaster == null) {
+			super.blendSpan(x, y, length, color, transparency);
+			return;
+		}
+		int i = x + y * width;
+		blendInts(i, i + length, color, transparency);
+	}
+
+	// blends the color over the pixels from i to end (exclusive) of intRaster
+	protected void blendInts(int i, int end, int color, int transparency) {
+		intRaster.blend(i, end, color, transparency);
+	}
+
+	protected void blendPixels(int x, int y, Bitmap<Integer> image, int xi, int yi, int length, int transparency) {
+		if(intRaster == null) {
+			super.blendPixels(x, y, image, xi, yi, length, transparency);
+			return;
+		}
+		intRaster.blendPixels(x + y * width, image.raster, xi + yi * image.width, length, transparency);
+	}
+
+	protected void blendMask(int x, int y, Bitmap<Byte> mask, int xi, int yi, int length, Integer color, int transparency) {
+		if(intRaster == null) {
+			super.blendMask(x, y, mask, xi, yi, length, color, transparency);
+			return;
+		}
+		intRaster.blendMask(x + y * width, mask.raster, xi + yi * mask.width, length, color, transparency);
+	}
+
+	protected int compositColors(int newColor, int oldColor, int transparency) {
+		return IntBlender.blend(newColor, oldColor, transparency);
 	}
 
 }
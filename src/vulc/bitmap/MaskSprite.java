@@ -0,0 +1,149 @@
+package vulc.bitmap;
+
+/**
+ * MaskSprite stores a bool or byte mask as runs of transparent, opaque and
+ * partially covered pixels, row by row. For byte masks, 0 is transparent
+ * and 0xff opaque.<br>
+ * Drawing a mask skips the transparent runs, fills the opaque ones with
+ * the color and blends the partial ones using the mask, so each row is
+ * drawn with a few span operations instead of pixel by pixel.
+ *
+ * @author Vulcalien
+ */
+public class MaskSprite {
+
+	public static final int TRANSPARENT = 0;
+	public static final int OPAQUE = 1;
+	public static final int PARTIAL = 2;
+
+	// shorter runs next to a partial run are blended with it: one longer
+	// blend is faster than several tiny operations
+	private static final int MIN_RUN = 8;
+
+	public final int width, height;
+
+	// the coverage of the partial runs, null if there are none
+	final Bitmap<Byte> mask;
+
+	// the runs of the row y are from rows[y] to rows[y + 1] (exclusive)
+	final int[] rows;
+	final int[] lengths;
+	final byte[] types;
+
+	private MaskSprite(Bitmap<Byte> mask, int width, int height, int[] rows, int[] lengths, byte[] types) {
+		this.mask = mask;
+		this.width = width;
+		this.height = height;
+		this.rows = rows;
+		this.lengths = lengths;
+		this.types = types;
+	}
+
+	public static MaskSprite fromBool(Bitmap<Boolean> mask) {
+		return compile(null, mask.width, mask.height, (x, y) -> mask.getPixel(x, y) ? OPAQUE : TRANSPARENT);
+	}
+
+	public static MaskSprite fromByte(Bitmap<Byte> mask) {
+		return compile(mask, mask.width, mask.height, (x, y) -> {
+			int coverage = mask.getPixel(x, y) & 0xff;
+			if(coverage == 0) return TRANSPARENT;
+			if(coverage == 0xff) return OPAQUE;
+			return PARTIAL;
+		});
+	}
+
+	private interface TypeReader {
+		int typeOf(int x, int y);
+	}
+
+	private static MaskSprite compile(Bitmap<Byte> mask, int width, int height, TypeReader reader) {
+		int[] rows = new int[height + 1];
+
+		int[] lengths = new int[16];
+		byte[] types = new byte[16];
+		int n = 0;
+		boolean hasPartial = false;
+
+		int[] row = new int[width];
+		for(int y = 0; y < height; y++) {
+			rows[y] = n;
+
+			for(int x = 0; x < width; x++) {
+				row[x] = reader.typeOf(x, y);
+			}
+			absorbShortRuns(row);
+
+			int x = 0;
+			while(x < width) {
+				int type = row[x];
+
+				int start = x;
+				x++;
+				while(x < width && row[x] == type) x++;
+
+				if(n == lengths.length) {
+					int[] newLengths = new int[n * 2];
+					System.arraycopy(lengths, 0, newLengths, 0, n);
+					lengths = newLengths;
+
+					byte[] newTypes = new byte[n * 2];
+					System.arraycopy(types, 0, newTypes, 0, n);
+					types = newTypes;
+				}
+				lengths[n] = x - start;
+				types[n] = (byte) type;
+				n++;
+
+				if(type == PARTIAL) hasPartial = true;
+			}
+		}
+		rows[height] = n;
+
+		int[] finalLengths = new int[n];
+		System.arraycopy(lengths, 0, finalLengths, 0, n);
+
+		byte[] finalTypes = new byte[n];
+		System.arraycopy(types, 0, finalTypes, 0, n);
+
+		return new MaskSprite(hasPartial ? mask : null, width, height, rows, finalLengths, finalTypes);
+	}
+
+	private static void absorbShortRuns(int[] row) {
+		int x = 0;
+		while(x < row.length) {
+			int start = x;
+			x++;
+			while(x < row.length && row[x] == row[start]) x++;
+
+			if(row[start] == PARTIAL || x - start >= MIN_RUN) continue;
+
+			boolean partialBefore = start > 0 && row[start - 1] == PARTIAL;
+			boolean partialAfter = x < row.length && row[x] == PARTIAL;
+			if(partialBefore || partialAfter) {
+				for(int i = start; i < x; i++) {
+					row[i] = PARTIAL;
+				}
+			}
+		}
+	}
+
+	public int getRunCount() {
+		return lengths.length;
+	}
+
+	public int getRunCount(int y) {
+		return rows[y + 1] - rows[y];
+	}
+
+	public int getRunLength(int y, int run) {
+		return lengths[rows[y] + run];
+	}
+
+	/**
+	 * Returns TRANSPARENT, OPAQUE or PARTIAL.
+	 */
+	public int getRunType(int y, int run) {
+		return types[rows[y] + run];
+	}
+
+}
@@ -0,0 +1,108 @@
+package vulc.bitmap;
+
+import java.util.Arrays;
+
+/**
+ * RLESprite stores a bitmap as runs of pixels of the same color, row by
+ * row. Pixels of one of the given transparent colors become transparent
+ * runs, which are skipped when the sprite is drawn.<br>
+ * Drawing fills each run with its color, so images with large flat areas
+ * are both smaller and faster to draw than the bitmap they come from.
+ *
+ * @author Vulcalien
+ */
+@SuppressWarnings("unchecked")
+public class RLESprite<T> {
+
+	public final int width, height;
+
+	// the runs of the row y are from rows[y] to rows[y + 1] (exclusive)
+	final int[] rows;
+	final int[] lengths;
+
+	// transparent runs have negative lengths
+	// the colors are in intColors if the bitmap is an int bitmap, otherwise in colors
+	final Object[] colors;
+	final int[] intColors;
+
+	// true if the bitmap is an ArgbBitmap, so the alpha of the colors is meaningful
+	final boolean hasAlpha;
+
+	public RLESprite(Bitmap<T> bitmap, T... transparentColors) {
+		this.width = bitmap.width;
+		this.height = bitmap.height;
+
+		this.rows = new int[height + 1];
+		this.hasAlpha = bitmap instanceof ArgbBitmap;
+
+		boolean isInt = bitmap.type == Integer.class;
+
+		int[] lengths = new int[16];
+		Object[] colors = isInt ? null : new Object[16];
+		int[] intColors = isInt ? new int[16] : null;
+		int n = 0;
+		for(int y = 0; y < height; y++) {
+			rows[y] = n;
+
+			int x = 0;
+			while(x < width) {
+				T color = bitmap.getPixel(x, y);
+
+				int start = x;
+				x++;
+				while(x < width && color.equals(bitmap.getPixel(x, y))) x++;
+
+				boolean transparent = Sprite.isTransparent(color, transparentColors);
+
+				// adjacent transparent runs are merged, even if their colors differ
+				if(transparent && n > rows[y] && lengths[n - 1] < 0) {
+					lengths[n - 1] -= x - start;
+					continue;
+				}
+
+				if(n == lengths.length) {
+					lengths = Arrays.copyOf(lengths, n * 2);
+					if(isInt) intColors = Arrays.copyOf(intColors, n * 2);
+					else colors = Arrays.copyOf(colors, n * 2);
+				}
+				lengths[n] = transparent ? start - x : x - start;
+				if(!transparent) {
+					if(isInt) intColors[n] = (Integer) color;
+					else colors[n] = color;
+				}
+				n++;
+			}
+		}
+		rows[height] = n;
+
+		this.lengths = Arrays.copyOf(lengths, n);
+		this.colors = isInt ? null : Arrays.copyOf(colors, n);
+		this.intColors = isInt ? Arrays.copyOf(intColors, n) : null;
+	}
+
+	public int getRunCount() {
+		return lengths.length;
+	}
+
+	public int getRunCount(int y) {
+		return rows[y + 1] - rows[y];
+	}
+
+	public int getRunLength(int y, int run) {
+		return Math.abs(lengths[rows[y] + run]);
+	}
+
+	/**
+	 * Returns the color of the run, or null if the run is transparent.
+	 */
+	public T getRunColor(int y, int run) {
+		return colorOf(rows[y] + run);
+	}
+
+	T colorOf(int run) {
+		if(lengths[run] < 0) return null;
+		if(intColors != null) return (T) Integer.valueOf(intColors[run]);
+		return (T) colors[run];
+	}
+
+}
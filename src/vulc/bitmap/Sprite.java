@@ -0,0 +1,83 @@
+package vulc.bitmap;
+
+import java.util.Arrays;
+
+/**
+ * Sprite stores, for each row of a bitmap, the spans of pixels that are
+ * not one of the given transparent colors. The transparent colors are
+ * checked only once, when the sprite is created: drawing a sprite copies
+ * the opaque spans and skips the transparent ones.<br>
+ * The bitmap is not copied, so the sprite must be created again if its
+ * transparent pixels change.
+ *
+ * @author Vulcalien
+ */
+@SuppressWarnings("unchecked")
+public class Sprite<T> {
+
+	public final Bitmap<T> bitmap;
+	public final int width, height;
+
+	// the spans of the row y are from rows[y] to rows[y + 1] (exclusive)
+	// each span is a pair of values: start (inclusive) and end (exclusive)
+	final int[] rows;
+	final int[] spans;
+
+	public Sprite(Bitmap<T> bitmap, T... transparentColors) {
+		this.bitmap = bitmap;
+		this.width = bitmap.width;
+		this.height = bitmap.height;
+
+		this.rows = new int[height + 1];
+
+		int[] spans = new int[16];
+		int n = 0;
+		for(int y = 0; y < height; y++) {
+			rows[y] = n;
+
+			int x = 0;
+			while(x < width) {
+				while(x < width && isTransparent(bitmap.getPixel(x, y), transparentColors)) x++;
+				if(x == width) break;
+
+				int start = x;
+				while(x < width && !isTransparent(bitmap.getPixel(x, y), transparentColors)) x++;
+
+				if(n + 2 > spans.length) spans = Arrays.copyOf(spans, spans.length * 2);
+				spans[n++] = start;
+				spans[n++] = x;
+			}
+		}
+		rows[height] = n;
+
+		this.spans = Arrays.copyOf(spans, n);
+	}
+
+	static <T> boolean isTransparent(T color, T[] transparentColors) {
+		for(int i = 0; i < transparentColors.length; i++) {
+			if(color.equals(transparentColors[i])) return true;
+		}
+		return false;
+	}
+
+	public int getSpanCount(int y) {
+		return (rows[y + 1] - rows[y]) / 2;
+	}
+
+	public int getSpanStart(int y, int span) {
+		return spans[rows[y] + span * 2];
+	}
+
+	public int getSpanEnd(int y, int span) {
+		return spans[rows[y] + span * 2 + 1];
+	}
+
+	public int getOpaquePixels() {
+		int count = 0;
+		for(int i = 0; i < spans.length; i += 2) {
+			count += spans[i + 1] - spans[i];
+		}
+		return count;
+	}
+
+}
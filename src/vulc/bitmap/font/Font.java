@@ -1,23 +1,34 @@
 package vulc.bitmap.font;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
 
 import vulc.bitmap.Bitmap;
+import vulc.bitmap.MaskSprite;
 import vulc.bitmap.font.charset.BoolCharset;
 import vulc.bitmap.font.charset.ByteCharset;
 import vulc.bitmap.font.charset.Charset;
+import vulc.bitmap.metrics.RenderMetrics;
 
 /**
  * Font class allows to write characters into a Bitmap.<br>
  * It uses a charset inside a binary file.<br>
+ * The file is read at once and each character is decoded the first time
+ * it is used.<br>
+ * The characters are compiled into runs of coverage the first time they
+ * are written and kept in a cache, that holds the most recently used
+ * ones.<br>
+ * Since version 5, the file can end with an index of the Unicode code
+ * points of the characters, see GlyphIndex. Otherwise the characters are
+ * the code points from 32. Code points that are not in the font are
+ * written with the fallback character.<br>
  * <br>
- * File-version: 4
+ * File-version: 5
  *
  * @author Vulcalien
  */
@@ -26,21 +37,32 @@ public class Font {
 	protected static final int TYPE_BOOL = 0;
 	protected static final int TYPE_BYTE = 1;
 
+	// set in the font type of files that have a code point index
+	protected static final int FLAG_INDEXED = 0x80;
+
+	private static final int HEADER_SIZE = 8;
+
 	protected int fontType;
 	protected int height;
 
 	protected Charset charset;
+	protected GlyphIndex index;
 	protected int letterSpacing;
 	protected int lineSpacing;
 
+	private volatile int glyphCacheSize = 256;
+
+	// created when the first character is written, and again if the size changes
+	private volatile GlyphCache glyphCache;
+
 	public Font(InputStream in) {
 		init(in);
 	}
 
 	public Font(File file) {
 		try {
-			init(new BufferedInputStream(new FileInputStream(file)));
-		} catch(FileNotFoundException e) {
+			init(Files.readAllBytes(file.toPath()));
+		} catch(IOException e) {
 			e.printStackTrace();
 		}
 	}
@@ -53,28 +75,58 @@ public class Font {
 	}
 
 	protected void init(InputStream inputStream) {
-		try(DataInputStream in = new DataInputStream(inputStream)) {
-			// FILE-HEADER
-			this.fontType = in.readByte();
+		try(InputStream in = inputStream) {
+			init(readAll(in));
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
 
-			int chars = in.readInt();
-			this.height = in.readByte();
+	protected void init(byte[] data) throws IOException {
+		if(data.length < HEADER_SIZE) throw new EOFException();
+		ByteBuffer header = ByteBuffer.wrap(data);
 
-			this.letterSpacing = in.readByte();
-			this.lineSpacing = in.readByte();
+		// FILE-HEADER
+		int type = header.get() & 0xff;
+		this.fontType = type & ~FLAG_INDEXED;
 
-			// FILE-BODY
-			if(fontType == TYPE_BOOL) {
-				this.charset = new BoolCharset(chars);
-			} else if(fontType == TYPE_BYTE) {
-				this.charset = new ByteCharset(chars);
-			}
-			charset.load(this, in);
-		} catch(IOException e) {
-			e.printStackTrace();
+		int chars = header.getInt();
+		this.height = header.get();
+
+		this.letterSpacing = header.get();
+		this.lineSpacing = header.get();
+
+		// FILE-BODY
+		if(fontType == TYPE_BOOL) {
+			this.charset = new BoolCharset(chars);
+		} else if(fontType == TYPE_BYTE) {
+			this.charset = new ByteCharset(chars);
+		}
+		int end = charset.load(this, data, HEADER_SIZE);
+
+		// CODE-POINT-INDEX
+		if((type & FLAG_INDEXED) != 0) {
+			ByteBuffer in = ByteBuffer.wrap(data);
+			in.position(end);
+			this.index = GlyphIndex.read(in, chars);
+		} else {
+			this.index = GlyphIndex.ascii(chars);
 		}
 	}
 
+	private static byte[] readAll(InputStream in) throws IOException {
+		byte[] buffer = new byte[Math.max(in.available(), 8192)];
+		int length = 0;
+		while(true) {
+			int n = in.read(buffer, length, buffer.length - length);
+			if(n == -1) break;
+
+			length += n;
+			if(length == buffer.length) buffer = Arrays.copyOf(buffer, length * 2);
+		}
+		return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+	}
+
 	public int getFontType() {
 		return fontType;
 	}
@@ -83,6 +135,18 @@ public class Font {
 		return charset.size();
 	}
 
+	public GlyphIndex getGlyphIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns true if the font has a character for the code point, without
+	 * using the fallback.
+	 */
+	public boolean canDisplay(int codePoint) {
+		return index.find(codePoint) != -1;
+	}
+
 	public int getHeight() {
 		return height;
 	}
@@ -107,6 +171,36 @@ public class Font {
 		return lineSpacing;
 	}
 
+	public int getGlyphCacheSize() {
+		return glyphCacheSize;
+	}
+
+	/**
+	 * Sets how many compiled characters are kept. 0 disables the cache:
+	 * the characters are drawn directly from the charset.
+	 */
+	public void setGlyphCacheSize(int size) {
+		if(size < 0) throw new IllegalArgumentException("size must not be negative");
+
+		this.glyphCacheSize = size;
+	}
+
+	/**
+	 * Returns the compiled character, or null if the cache is disabled or
+	 * the charset cannot compile it.
+	 */
+	protected MaskSprite getGlyph(int charCode) {
+		int size = glyphCacheSize;
+		if(size == 0) return null;
+
+		GlyphCache cache = glyphCache;
+		if(cache == null || cache.size != size) {
+			cache = new GlyphCache(charset.size(), size);
+			glyphCache = cache;
+		}
+		return cache.get(charset, charCode);
+	}
+
 	public Font getScaled(int xScale, int yScale) {
 		Font font = new Font();
 		font.fontType = fontType;
@@ -116,6 +210,8 @@ public class Font {
 		font.lineSpacing = lineSpacing * yScale;
 
 		font.charset = charset.getScaled(xScale, yScale);
+		font.index = index;
+		font.glyphCacheSize = glyphCacheSize;
 		return font;
 	}
 
@@ -124,21 +220,37 @@ public class Font {
 	}
 
 	public <T> void write(Bitmap<T> bitmap, String text, T color, int transparency, int x, int y) {
-		int xOffset = x;
-		int yOffset = y;
+		long startTime = RenderMetrics.enter();
+		int chars = 0;
+		long pixels = 0;
 
-		for(int i = 0; i < text.length(); i++) {
-			char character = text.charAt(i);
-
-			if(character == '\n') {
-				xOffset = x;
-				yOffset += height + lineSpacing;
-			} else {
-				int charCode = character - 32;
-				charset.draw(bitmap, charCode, color, transparency, xOffset, yOffset);
-
-				xOffset += charset.widthOf(charCode) + letterSpacing;
+		try {
+			int xOffset = x;
+			int yOffset = y;
+
+			for(int i = 0; i < text.length();) {
+				int codePoint = text.codePointAt(i);
+				i += Character.charCount(codePoint);
+
+				if(codePoint == '\n') {
+					xOffset = x;
+					yOffset += height + lineSpacing;
+				} else {
+					int charCode = index.glyphOf(codePoint);
+					if(charCode == -1) continue;
+
+					drawChar(bitmap, charCode, color, transparency, xOffset, yOffset);
+
+					int width = charset.widthOf(charCode);
+					if(startTime != RenderMetrics.DISABLED) {
+						chars++;
+						pixels += RenderMetrics.area(bitmap, xOffset, yOffset, width, height);
+					}
+					xOffset += width + letterSpacing;
+				}
 			}
+		} finally {
+			RenderMetrics.exit(startTime, bitmap, RenderMetrics.WRITE, chars, pixels, transparency);
 		}
 	}
 
@@ -146,18 +258,38 @@ public class Font {
 		this.write(bitmap, text, color, 0xff, x, y);
 	}
 
+	protected <T> void drawChar(Bitmap<T> bitmap, int charCode, T color, int transparency, int x, int y) {
+		MaskSprite glyph = getGlyph(charCode);
+		if(glyph == null) {
+			charset.draw(bitmap, charCode, color, transparency, x, y);
+		} else {
+			bitmap.drawMask(glyph, color, transparency, x, y);
+		}
+	}
+
+	public TextLayout layout(String text) {
+		return new TextLayout(this, text);
+	}
+
+	public TextLayout layout(String text, int maxWidth) {
+		return new TextLayout(this, text, maxWidth);
+	}
+
 	public int widthOf(String text) {
 		int longestWidth = 0;
 		int currentWidth = 0;
-		for(int i = 0; i < text.length(); i++) {
-			char character = text.charAt(i);
+		for(int i = 0; i < text.length();) {
+			int codePoint = text.codePointAt(i);
+			i += Character.charCount(codePoint);
 
-			if(character == '\n') {
+			if(codePoint == '\n') {
 				if(currentWidth != 0) currentWidth -= letterSpacing;
 				if(currentWidth > longestWidth) longestWidth = currentWidth;
 				currentWidth = 0;
 			} else {
-				int charCode = character - 32;
+				int charCode = index.glyphOf(codePoint);
+				if(charCode == -1) continue;
+
 				currentWidth += charset.widthOf(charCode) + letterSpacing;
 			}
 		}
@@ -168,7 +300,16 @@ public class Font {
 	}
 
 	public int widthOf(char character) {
-		return charset.widthOf(character - 32);
+		return widthOf((int) character);
+	}
+
+	/**
+	 * Returns the width of the character of the code point, or 0 if it is
+	 * not in the font and there is no fallback.
+	 */
+	public int widthOf(int codePoint) {
+		int charCode = index.glyphOf(codePoint);
+		return charCode != -1 ? charset.widthOf(charCode) : 0;
 	}
 
 	public int heightOf(String text) {
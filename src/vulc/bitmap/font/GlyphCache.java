@@ -0,0 +1,85 @@
+package vulc.bitmap.font;
+
+import vulc.bitmap.MaskSprite;
+import vulc.bitmap.font.charset.Charset;
+
+/**
+ * GlyphCache keeps the compiled characters of a font, up to a fixed
+ * number, and removes the least recently used one when it is full.<br>
+ * The cached characters are linked in order of use through prev and next,
+ * so finding and removing the least recently used one does not depend on
+ * the size of the charset.
+ *
+ * @author Vulcalien
+ */
+final class GlyphCache {
+
+	final int size;
+
+	// by char code, null if the character is not cached
+	private final MaskSprite[] glyphs;
+
+	// the char codes before and after each cached character, -1 at the ends
+	private final int[] prev;
+	private final int[] next;
+
+	// the most and least recently used characters
+	private int head = -1;
+	private int tail = -1;
+	private int count;
+
+	GlyphCache(int chars, int size) {
+		this.size = size;
+		this.glyphs = new MaskSprite[chars];
+		this.prev = new int[chars];
+		this.next = new int[chars];
+	}
+
+	// returns null if the charset cannot compile the character
+	synchronized MaskSprite get(Charset charset, int charCode) {
+		MaskSprite glyph = glyphs[charCode];
+		if(glyph != null) {
+			if(head != charCode) {
+				unlink(charCode);
+				pushFront(charCode);
+			}
+			return glyph;
+		}
+
+		glyph = charset.compile(charCode);
+		if(glyph == null) return null;
+
+		if(count == size) {
+			int oldest = tail;
+			unlink(oldest);
+			glyphs[oldest] = null;
+			count--;
+		}
+
+		glyphs[charCode] = glyph;
+		pushFront(charCode);
+		count++;
+		return glyph;
+	}
+
+	private void unlink(int charCode) {
+		int p = prev[charCode];
+		int n = next[charCode];
+
+		if(p == -1) head = n;
+		else next[p] = n;
+
+		if(n == -1) tail = p;
+		else prev[n] = p;
+	}
+
+	private void pushFront(int charCode) {
+		prev[charCode] = -1;
+		next[charCode] = head;
+
+		if(head == -1) tail = charCode;
+		else prev[head] = charCode;
+		head = charCode;
+	}
+
+}
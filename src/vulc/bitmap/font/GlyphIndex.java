@@ -0,0 +1,140 @@
+package vulc.bitmap.font;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * GlyphIndex maps Unicode code points to the characters of a charset.<br>
+ * It is a sorted table of ranges: each range maps consecutive code points
+ * to consecutive characters. Code points below 256 are looked up in a
+ * table, the others with a binary search, and no lookup allocates.<br>
+ * Code points that are not in the index are mapped to the fallback
+ * character, or to -1 if there is none.
+ *
+ * @author Vulcalien
+ */
+public class GlyphIndex {
+
+	private static final int TABLE_SIZE = 256;
+
+	// the range i maps firsts[i] ... firsts[i] + counts[i] - 1 to glyphs[i] ...
+	private final int[] firsts;
+	private final int[] counts;
+	private final int[] glyphs;
+
+	// the character of each code point below TABLE_SIZE, or -1
+	private final int[] table = new int[TABLE_SIZE];
+
+	private final int fallback;
+
+	/**
+	 * Creates an index from ranges sorted by code point, that must not
+	 * overlap. fallback is the character used for missing code points, or
+	 * -1.
+	 */
+	public GlyphIndex(int[] firsts, int[] counts, int[] glyphs, int fallback) {
+		if(firsts.length != counts.length || firsts.length != glyphs.length) {
+			throw new IllegalArgumentException("The arrays must have the same length");
+		}
+		for(int i = 0; i < firsts.length; i++) {
+			if(counts[i] <= 0) throw new IllegalArgumentException("Ranges must not be empty");
+			if(i > 0 && firsts[i] < (long) firsts[i - 1] + counts[i - 1]) {
+				throw new IllegalArgumentException("Ranges must be sorted and must not overlap");
+			}
+		}
+		this.firsts = firsts.clone();
+		this.counts = counts.clone();
+		this.glyphs = glyphs.clone();
+		this.fallback = fallback;
+
+		Arrays.fill(table, -1);
+		for(int i = 0; i < firsts.length && firsts[i] < TABLE_SIZE; i++) {
+			int end = (int) Math.min((long) firsts[i] + counts[i], TABLE_SIZE);
+			for(int c = firsts[i]; c < end; c++) {
+				table[c] = glyphs[i] + c - firsts[i];
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the fonts without a code point index (up to
+	 * version 4): the characters are the code points from 32, and the
+	 * fallback is '?'.
+	 */
+	public static GlyphIndex ascii(int chars) {
+		int fallback = '?' - 32 < chars ? '?' - 32 : -1;
+		return new GlyphIndex(new int[] {32}, new int[] {chars}, new int[] {0}, fallback);
+	}
+
+	/**
+	 * Reads an index: the number of ranges, the first code point, number of
+	 * code points and first character of each range, then the fallback.
+	 * All the values are big-endian ints.
+	 */
+	public static GlyphIndex read(ByteBuffer in, int chars) throws IOException {
+		try {
+			int n = in.getInt();
+			if(n < 0 || n > in.remaining() / 12) throw new IOException("Invalid number of ranges: " + n);
+
+			int[] firsts = new int[n];
+			int[] counts = new int[n];
+			int[] glyphs = new int[n];
+			for(int i = 0; i < n; i++) {
+				firsts[i] = in.getInt();
+				counts[i] = in.getInt();
+				glyphs[i] = in.getInt();
+
+				if(glyphs[i] < 0 || (long) glyphs[i] + counts[i] > chars) {
+					throw new IOException("Range " + i + " is outside the charset");
+				}
+			}
+
+			int fallback = in.getInt();
+			if(fallback < -1 || fallback >= chars) throw new IOException("Invalid fallback: " + fallback);
+
+			return new GlyphIndex(firsts, counts, glyphs, fallback);
+		} catch(BufferUnderflowException e) {
+			throw new IOException("The code point index is truncated", e);
+		} catch(IllegalArgumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the character of the code point, or -1 if it is not in the
+	 * index.
+	 */
+	public int find(int codePoint) {
+		if(codePoint >= 0 && codePoint < TABLE_SIZE) return table[codePoint];
+
+		int low = 0;
+		int high = firsts.length - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			if(codePoint < firsts[mid]) {
+				high = mid - 1;
+			} else if(codePoint - firsts[mid] >= counts[mid]) {
+				low = mid + 1;
+			} else {
+				return glyphs[mid] + codePoint - firsts[mid];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the character of the code point, the fallback if it is not in
+	 * the index, or -1 if there is no fallback.
+	 */
+	public int glyphOf(int codePoint) {
+		int glyph = find(codePoint);
+		return glyph != -1 ? glyph : fallback;
+	}
+
+	public int getFallback() {
+		return fallback;
+	}
+
+}
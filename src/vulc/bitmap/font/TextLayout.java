@@ -0,0 +1,197 @@
+package vulc.bitmap.font;
+
+import vulc.bitmap.Bitmap;
+import vulc.bitmap.metrics.RenderMetrics;
+
+/**
+ * TextLayout measures a text once and keeps the position of each of its
+ * characters, so it can be drawn many times, in any bitmap, without being
+ * measured again.<br>
+ * If a max width is given, lines that are longer are wrapped at the last
+ * space that fits, or inside a word if it does not fit alone.<br>
+ * The spacing of the font is read when the layout is created: changing it
+ * later does not change the layout.
+ *
+ * @author Vulcalien
+ */
+public class TextLayout {
+
+	public static final int ALIGN_LEFT = 0;
+	public static final int ALIGN_CENTER = 1;
+	public static final int ALIGN_RIGHT = 2;
+
+	public final Font font;
+	public final String text;
+
+	public final int width, height;
+
+	// the char code and position of each character
+	private int[] charCodes = new int[16];
+	private int[] xs = new int[16];
+	private int[] ys = new int[16];
+	private int nChars = 0;
+
+	// the characters of the line i are from lineStarts[i] to lineStarts[i + 1] (exclusive)
+	private int[] lineStarts = new int[8];
+	private int[] lineWidths = new int[8];
+	private int nLines = 0;
+
+	public TextLayout(Font font, String text) {
+		this(font, text, -1);
+	}
+
+	/**
+	 * Creates a layout whose lines are not longer than maxWidth.
+	 * If maxWidth is negative, lines are only broken at '\n'.
+	 */
+	public TextLayout(Font font, String text, int maxWidth) {
+		this.font = font;
+		this.text = text;
+
+		int paragraphStart = 0;
+		while(true) {
+			int paragraphEnd = text.indexOf('\n', paragraphStart);
+			if(paragraphEnd == -1) paragraphEnd = text.length();
+
+			layoutParagraph(paragraphStart, paragraphEnd, maxWidth);
+
+			if(paragraphEnd == text.length()) break;
+			paragraphStart = paragraphEnd + 1;
+		}
+		lineStarts = grow(lineStarts, nLines + 1);
+		lineStarts[nLines] = nChars;
+
+		int width = 0;
+		for(int i = 0; i < nLines; i++) {
+			width = Math.max(width, lineWidths[i]);
+		}
+		this.width = width;
+		this.height = nLines * font.getHeight() + (nLines - 1) * font.getLineSpacing();
+	}
+
+	private void layoutParagraph(int start, int end, int maxWidth) {
+		int spacing = font.getLetterSpacing();
+
+		int i = start;
+		do {
+			// find how many characters fit in the line
+			int x = 0;
+			int lastSpace = -1;
+			int j = i;
+			while(j < end) {
+				int codePoint = text.codePointAt(j);
+				if(codePoint == ' ') lastSpace = j;
+
+				int charCode = font.index.glyphOf(codePoint);
+				if(charCode != -1) {
+					int w = font.charset.widthOf(charCode);
+					if(maxWidth >= 0 && j > i && x + w > maxWidth) break;
+
+					x += w + spacing;
+				}
+				j += Character.charCount(codePoint);
+			}
+
+			int lineEnd = j;
+			int next = j;
+			if(j < end) {
+				// break at the last space, if there is one, otherwise inside the word
+				if(lastSpace > i) {
+					lineEnd = lastSpace;
+					next = lastSpace + 1;
+				}
+				while(next < end && text.charAt(next) == ' ') next++;
+			}
+			addLine(i, lineEnd);
+
+			i = next;
+		} while(i < end);
+	}
+
+	private void addLine(int start, int end) {
+		int spacing = font.getLetterSpacing();
+		int y = nLines * (font.getHeight() + font.getLineSpacing());
+
+		lineStarts = grow(lineStarts, nLines + 1);
+		lineWidths = grow(lineWidths, nLines + 1);
+		lineStarts[nLines] = nChars;
+
+		int x = 0;
+		for(int i = start; i < end;) {
+			int codePoint = text.codePointAt(i);
+			i += Character.charCount(codePoint);
+
+			int charCode = font.index.glyphOf(codePoint);
+			if(charCode == -1) continue;
+
+			if(nChars == charCodes.length) {
+				charCodes = grow(charCodes, nChars + 1);
+				xs = grow(xs, nChars + 1);
+				ys = grow(ys, nChars + 1);
+			}
+			charCodes[nChars] = charCode;
+			xs[nChars] = x;
+			ys[nChars] = y;
+			nChars++;
+
+			x += font.charset.widthOf(charCode) + spacing;
+		}
+		lineWidths[nLines] = nChars > lineStarts[nLines] ? x - spacing : 0;
+		nLines++;
+	}
+
+	private static int[] grow(int[] array, int minLength) {
+		if(array.length >= minLength) return array;
+
+		int[] result = new int[Math.max(minLength, array.length * 2)];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	public int getLineCount() {
+		return nLines;
+	}
+
+	public int getLineWidth(int line) {
+		return lineWidths[line];
+	}
+
+	public <T> void draw(Bitmap<T> bitmap, T color, int transparency, int x, int y) {
+		long startTime = RenderMetrics.enter();
+		try {
+			for(int i = 0; i < nChars; i++) {
+				font.drawChar(bitmap, charCodes[i], color, transparency, x + xs[i], y + ys[i]);
+			}
+		} finally {
+			RenderMetrics.exit(startTime, bitmap, RenderMetrics.WRITE, nChars,
+			                   RenderMetrics.area(bitmap, x, y, width, height), transparency);
+		}
+	}
+
+	public <T> void draw(Bitmap<T> bitmap, T color, int x, int y) {
+		this.draw(bitmap, color, 0xff, x, y);
+	}
+
+	/**
+	 * Draws the layout with each line aligned inside a box that starts at x
+	 * and is boxWidth pixels wide.
+	 */
+	public <T> void draw(Bitmap<T> bitmap, T color, int transparency, int x, int y, int boxWidth, int alignment) {
+		long startTime = RenderMetrics.enter();
+		try {
+			for(int line = 0; line < nLines; line++) {
+				int xOffset = x;
+				if(alignment == ALIGN_CENTER) xOffset += (boxWidth - lineWidths[line]) / 2;
+				else if(alignment == ALIGN_RIGHT) xOffset += boxWidth - lineWidths[line];
+
+				for(int i = lineStarts[line]; i < lineStarts[line + 1]; i++) {
+					font.drawChar(bitmap, charCodes[i], color, transparency, xOffset + xs[i], y + ys[i]);
+				}
+			}
+		} finally {
+			RenderMetrics.exit(startTime, bitmap, RenderMetrics.WRITE, nChars,
+			                   RenderMetrics.area(bitmap, x, y, boxWidth, height), transparency);
+		}
+	}
+
+}
@@ -1,18 +1,34 @@
 package vulc.bitmap.font.charset;
 
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 
 import vulc.bitmap.Bitmap;
 import vulc.bitmap.BoolBitmap;
+import vulc.bitmap.MaskSprite;
 import vulc.bitmap.font.Font;
+import vulc.bitmap.raster.BitRaster;
 
 public class BoolCharset extends Charset {
 
+	// null until the character is first used
 	private final Bitmap<Boolean>[] imgs;
+	private final int[] widths;
+
+	private int height;
+
+	// where the pixels of each character start in data
+	private byte[] data;
+	private int[] offsets;
+
+	// if not null, the characters are the ones of source, scaled
+	private BoolCharset source;
+	private int xScale, yScale;
 
 	public BoolCharset(int chars) {
 		this.imgs = new BoolBitmap[chars];
+		this.widths = new int[chars];
 	}
 
 	public int size() {
@@ -20,67 +36,96 @@ public class BoolCharset extends Charset {
 	}
 
 	// version: 1
-	public void load(Font font, DataInputStream in) throws IOException {
-		int height = font.getHeight();
+	public int load(Font font, byte[] data, int offset) throws IOException {
+		this.height = font.getHeight();
+		this.data = data;
+		this.offsets = new int[imgs.length];
 		isMonospaced = true;
 
 		for(int i = 0; i < imgs.length; i++) {
-			int width = in.readByte();
-
-			Bitmap<Boolean> img = new BoolBitmap(width, height);
-			imgs[i] = img;
+			if(offset >= data.length) throw new EOFException();
+			int width = data[offset];
 
 			int nPixels = width * height;
 			int nBytes = nPixels / 8 + (nPixels % 8 != 0 ? 1 : 0);
 
-			byte[] dataBuffer = new byte[nBytes];
-			in.read(dataBuffer);
+			widths[i] = width;
+			offsets[i] = offset + 1;
+			offset += 1 + nBytes;
 
-			// each byte contains 8 pixels
-			boolean[] pixels = bytesToBits(dataBuffer);
-
-			// nPixels is used because there can be padding bits
-			for(int p = 0; p < nPixels; p++) {
-				boolean pixel = pixels[p];
-				img.raster.setPixel(p, pixel);
+			if(isMonospaced && width != widths[0]) {
+				isMonospaced = false;
 			}
+		}
+		if(offset > data.length) throw new EOFException();
+		return offset;
+	}
 
-			if(isMonospaced && width != imgs[0].width) {
-				isMonospaced = false;
+	@Deprecated
+	public void load(Font font, DataInputStream in) throws IOException {
+		int height = font.getHeight();
+		load(font, readCharacters(in, imgs.length, width -> (width * height + 7) / 8), 0);
+	}
+
+	private Bitmap<Boolean> glyph(int charCode) {
+		// if two threads decode the same character, they get equal bitmaps
+		Bitmap<Boolean> img = imgs[charCode];
+		if(img == null) {
+			if(source != null) {
+				img = source.glyph(charCode).getScaled(xScale, yScale);
+			} else {
+				img = decode(charCode);
 			}
+			imgs[charCode] = img;
+		}
+		return img;
+	}
+
+	private Bitmap<Boolean> decode(int charCode) {
+		int width = widths[charCode];
+		int offset = offsets[charCode];
+
+		int nPixels = width * height;
+		int nBytes = nPixels / 8 + (nPixels % 8 != 0 ? 1 : 0);
+
+		// each byte contains 8 pixels, the first one in the most significant bit
+		long[] words = new long[BitRaster.wordsFor(nPixels)];
+		for(int b = 0; b < nBytes; b++) {
+			long bits = Integer.reverse(data[offset + b] & 0xff) >>> 24;
+			words[b >> 3] |= bits << ((b & 7) * 8);
 		}
+
+		// remove the padding bits
+		if(nPixels % 64 != 0) {
+			words[words.length - 1] &= -1L >>> -nPixels;
+		}
+		return new BoolBitmap(width, height, words);
 	}
 
 	public <T> void draw(Bitmap<T> bitmap, int charCode, T color, int transparency, int x, int y) {
-		bitmap.drawBool(imgs[charCode], color, transparency, x, y);
+		bitmap.drawBool(glyph(charCode), color, transparency, x, y);
+	}
+
+	public MaskSprite compile(int charCode) {
+		return MaskSprite.fromBool(glyph(charCode));
 	}
 
 	public Charset getScaled(int xScale, int yScale) {
 		BoolCharset result = new BoolCharset(imgs.length);
 		result.isMonospaced = this.isMonospaced;
 
+		result.source = this;
+		result.xScale = xScale;
+		result.yScale = yScale;
+
 		for(int i = 0; i < imgs.length; i++) {
-			Bitmap<Boolean> img = imgs[i];
-			result.imgs[i] = img.getScaled(xScale, yScale);
+			result.widths[i] = widths[i] * xScale;
 		}
 		return result;
 	}
 
 	public int widthOf(int charCode) {
-		return imgs[charCode].width;
-	}
-
-	private static boolean[] bytesToBits(byte[] bytes) {
-		boolean[] result = new boolean[bytes.length * 8];
-
-		for(int i = 0; i < bytes.length; i++) {
-			byte b = bytes[i];
-
-			for(int j = 0; j < 8; j++) {
-				result[i * 8 + j] = ((b >> (7 - j)) & 1) != 0;
-			}
-		}
-		return result;
+		return widths[charCode];
 	}
 
 }
@@ -1,18 +1,34 @@
 package vulc.bitmap.font.charset;
 
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
 
 import vulc.bitmap.Bitmap;
 import vulc.bitmap.ByteBitmap;
+import vulc.bitmap.MaskSprite;
 import vulc.bitmap.font.Font;
 
 public class ByteCharset extends Charset {
 
+	// null until the character is first used
 	private final Bitmap<Byte>[] imgs;
+	private final int[] widths;
+
+	private int height;
+
+	// where the pixels of each character start in data
+	private byte[] data;
+	private int[] offsets;
+
+	// if not null, the characters are the ones of source, scaled
+	private ByteCharset source;
+	private int xScale, yScale;
 
 	public ByteCharset(int chars) {
 		this.imgs = new ByteBitmap[chars];
+		this.widths = new int[chars];
 	}
 
 	public int size() {
@@ -20,45 +36,74 @@ public class ByteCharset extends Charset {
 	}
 
 	// version: 1
-	public void load(Font font, DataInputStream in) throws IOException {
-		int height = font.getHeight();
+	public int load(Font font, byte[] data, int offset) throws IOException {
+		this.height = font.getHeight();
+		this.data = data;
+		this.offsets = new int[imgs.length];
 		isMonospaced = true;
 
 		for(int i = 0; i < imgs.length; i++) {
-			int width = in.readByte();
+			if(offset >= data.length) throw new EOFException();
+			int width = data[offset];
 
-			Bitmap<Byte> img = new ByteBitmap(width, height);
-			imgs[i] = img;
+			widths[i] = width;
+			offsets[i] = offset + 1;
+			offset += 1 + width * height;
 
-			int nPixels = width * height;
-			for(int p = 0; p < nPixels; p++) {
-				byte pixel = in.readByte();
-				img.raster.setPixel(p, pixel);
+			if(isMonospaced && width != widths[0]) {
+				isMonospaced = false;
 			}
+		}
+		if(offset > data.length) throw new EOFException();
+		return offset;
+	}
 
-			if(isMonospaced && width != imgs[0].width) {
-				isMonospaced = false;
+	@Deprecated
+	public void load(Font font, DataInputStream in) throws IOException {
+		int height = font.getHeight();
+		load(font, readCharacters(in, imgs.length, width -> width * height), 0);
+	}
+
+	private Bitmap<Byte> glyph(int charCode) {
+		// if two threads decode the same character, they get equal bitmaps
+		Bitmap<Byte> img = imgs[charCode];
+		if(img == null) {
+			if(source != null) {
+				img = source.glyph(charCode).getScaled(xScale, yScale);
+			} else {
+				int offset = offsets[charCode];
+				byte[] pixels = Arrays.copyOfRange(data, offset, offset + widths[charCode] * height);
+				img = new ByteBitmap(widths[charCode], height, pixels);
 			}
+			imgs[charCode] = img;
 		}
+		return img;
 	}
 
 	public <T> void draw(Bitmap<T> bitmap, int charCode, T color, int transparency, int x, int y) {
-		bitmap.drawByte(imgs[charCode], color, transparency, x, y);
+		bitmap.drawByte(glyph(charCode), color, transparency, x, y);
+	}
+
+	public MaskSprite compile(int charCode) {
+		return MaskSprite.fromByte(glyph(charCode));
 	}
 
 	public Charset getScaled(int xScale, int yScale) {
 		ByteCharset result = new ByteCharset(imgs.length);
 		result.isMonospaced = this.isMonospaced;
 
+		result.source = this;
+		result.xScale = xScale;
+		result.yScale = yScale;
+
 		for(int i = 0; i < imgs.length; i++) {
-			Bitmap<Byte> img = imgs[i];
-			result.imgs[i] = img.getScaled(xScale, yScale);
+			result.widths[i] = widths[i] * xScale;
 		}
 		return result;
 	}
 
 	public int widthOf(int charCode) {
-		return imgs[charCode].width;
+		return widths[charCode];
 	}
 
 }
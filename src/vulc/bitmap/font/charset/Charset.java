@@ -1,9 +1,12 @@
 package vulc.bitmap.font.charset;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.function.IntUnaryOperator;
 
 import vulc.bitmap.Bitmap;
+import vulc.bitmap.MaskSprite;
 import vulc.bitmap.font.Font;
 
 public abstract class Charset {
@@ -12,10 +15,69 @@ public abstract class Charset {
 
 	public abstract int size();
 
-	public abstract void load(Font font, DataInputStream in) throws IOException;
+	/**
+	 * Reads the characters from data, starting at offset. Only the widths
+	 * are read now: the pixels are decoded when each character is first
+	 * used, so data must not be changed.<br>
+	 * Returns the offset of the first byte after the characters.
+	 */
+	public abstract int load(Font font, byte[] data, int offset) throws IOException;
+
+	/**
+	 * Reads the characters from the stream.<br>
+	 * By default, this method reads the rest of the stream and passes it to
+	 * load(Font, byte[], int). If the stream supports mark, the bytes after
+	 * the characters are left in the stream.
+	 *
+	 * @deprecated Use load(Font, byte[], int): it can read the pixels of
+	 * each character only when it is first used.
+	 */
+	@Deprecated
+	public void load(Font font, DataInputStream in) throws IOException {
+		boolean mark = in.markSupported();
+		if(mark) in.mark(Integer.MAX_VALUE);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+
+		int end = load(font, out.toByteArray(), 0);
+		if(mark) {
+			in.reset();
+			in.skipBytes(end);
+		}
+	}
+
+	// reads the characters from the stream into an array, for load(Font, byte[], int)
+	// each character is its width followed by bytesOf(width) bytes of pixels
+	static byte[] readCharacters(DataInputStream in, int chars, IntUnaryOperator bytesOf) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for(int i = 0; i < chars; i++) {
+			int width = in.readByte();
+
+			byte[] pixels = new byte[bytesOf.applyAsInt(width)];
+			in.readFully(pixels);
+
+			out.write(width);
+			out.write(pixels);
+		}
+		return out.toByteArray();
+	}
 
 	public abstract <T> void draw(Bitmap<T> bitmap, int charCode, T color, int transparency, int x, int y);
 
+	/**
+	 * Returns the character as runs of coverage, that can be drawn with
+	 * Bitmap.drawMask, or null if the charset cannot compile it: the
+	 * character is then drawn with draw.
+	 */
+	public MaskSprite compile(int charCode) {
+		return null;
+	}
+
 	public abstract Charset getScaled(int xScale, int yScale);
 
 	public abstract int widthOf(int charCode);
@@ -0,0 +1,260 @@
+package vulc.bitmap.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+
+/**
+ * BmpDecoder reads uncompressed BMP images: 1, 4 and 8 bits with a
+ * palette, 16 and 32 bits with bit fields, and 24 bits.<br>
+ * Most BMP images are stored bottom-up: their rows are read from the
+ * bottom of the image, see isBottomUp. A decoder created from a
+ * SeekableByteChannel reads them from the top instead, seeking to each
+ * row.
+ *
+ * @author Vulcalien
+ */
+public class BmpDecoder extends ImageDecoder {
+
+	private static final int BI_RGB = 0;
+	private static final int BI_BITFIELDS = 3;
+	private static final int BI_ALPHABITFIELDS = 6;
+
+	private final int bitsPerPixel;
+	private final boolean bottomUp;
+
+	private int[] palette;
+
+	// the mask, shift and maximum value of red, green, blue and alpha
+	private final int[] masks = new int[4];
+	private final int[] shifts = new int[4];
+	private final int[] maxValues = new int[4];
+
+	private final byte[] line;
+
+	// not null if the rows are stored bottom-up and are read from the channel
+	private final SeekableByteChannel channel;
+	private final long pixelsStart;
+
+	public BmpDecoder(InputStream in) throws IOException {
+		this(in, null);
+	}
+
+	/**
+	 * Creates a decoder that reads the image from the current position of
+	 * the channel. The rows are read from the top of the image even if they
+	 * are stored bottom-up. The channel is closed by close.
+	 */
+	public BmpDecoder(SeekableByteChannel channel) throws IOException {
+		this(Channels.newInputStream(channel), channel);
+	}
+
+	private BmpDecoder(InputStream in, SeekableByteChannel channel) throws IOException {
+		super(in);
+		long start = channel != null ? channel.position() : 0;
+
+		// FILE-HEADER
+		byte[] fileHeader = new byte[14];
+		readFully(fileHeader, 0, fileHeader.length);
+		if(fileHeader[0] != 'B' || fileHeader[1] != 'M') throw new IOException("Not a BMP image");
+		long dataOffset = uint(fileHeader, 10);
+
+		// INFO-HEADER
+		byte[] sizeBytes = new byte[4];
+		readFully(sizeBytes, 0, 4);
+		long headerSize = uint(sizeBytes, 0);
+		if(headerSize != 12 && (headerSize < 40 || headerSize > 1024)) throw new IOException("Invalid header size: " + headerSize);
+
+		byte[] header = new byte[(int) headerSize];
+		System.arraycopy(sizeBytes, 0, header, 0, 4);
+		readFully(header, 4, header.length - 4);
+		long read = fileHeader.length + header.length;
+
+		int compression = BI_RGB;
+		int colorsUsed = 0;
+		int paletteEntrySize = 4;
+		if(headerSize == 12) {
+			width = ushort(header, 4);
+			height = ushort(header, 6);
+			bitsPerPixel = ushort(header, 10);
+			paletteEntrySize = 3;
+			bottomUp = true;
+		} else {
+			width = sint(header, 4);
+			int h = sint(header, 8);
+			bitsPerPixel = ushort(header, 14);
+			compression = sint(header, 16);
+			if(headerSize >= 36) colorsUsed = sint(header, 32);
+
+			bottomUp = h > 0;
+			height = Math.abs(h);
+		}
+		if(width <= 0 || height <= 0) throw new IOException("Invalid size: " + width + "x" + height);
+
+		// BIT-FIELDS
+		if(compression == BI_BITFIELDS || compression == BI_ALPHABITFIELDS) {
+			if(bitsPerPixel != 16 && bitsPerPixel != 32) throw new IOException("Invalid bit fields for " + bitsPerPixel + " bits");
+
+			int nMasks = compression == BI_ALPHABITFIELDS ? 4 : 3;
+			if(headerSize > 40) {
+				for(int i = 0; i < 4 && 40 + i * 4 + 4 <= headerSize; i++) {
+					masks[i] = sint(header, 40 + i * 4);
+				}
+			} else {
+				// the masks follow the header
+				byte[] maskBytes = new byte[nMasks * 4];
+				readFully(maskBytes, 0, maskBytes.length);
+				read += maskBytes.length;
+
+				for(int i = 0; i < nMasks; i++) {
+					masks[i] = sint(maskBytes, i * 4);
+				}
+			}
+		} else if(compression == BI_RGB) {
+			if(bitsPerPixel == 16) {
+				masks[0] = 0x7c00;
+				masks[1] = 0x03e0;
+				masks[2] = 0x001f;
+			} else if(bitsPerPixel == 32) {
+				masks[0] = 0xff0000;
+				masks[1] = 0x00ff00;
+				masks[2] = 0x0000ff;
+			}
+		} else {
+			throw new IOException("Unsupported BMP compression: " + compression);
+		}
+		for(int i = 0; i < 4; i++) {
+			shifts[i] = masks[i] == 0 ? 0 : Integer.numberOfTrailingZeros(masks[i]);
+			maxValues[i] = masks[i] >>> shifts[i];
+		}
+		this.hasAlpha = masks[3] != 0;
+
+		// PALETTE
+		if(bitsPerPixel == 1 || bitsPerPixel == 4 || bitsPerPixel == 8) {
+			int colors = colorsUsed > 0 && colorsUsed < (1 << bitsPerPixel) ? colorsUsed : 1 << bitsPerPixel;
+
+			byte[] entries = new byte[colors * paletteEntrySize];
+			readFully(entries, 0, entries.length);
+			read += entries.length;
+
+			// indexes that are out of the palette are black
+			palette = new int[1 << bitsPerPixel];
+			Arrays.fill(palette, 0xff000000);
+			for(int i = 0; i < colors; i++) {
+				int p = i * paletteEntrySize;
+				palette[i] = 0xff000000
+				             | (entries[p + 2] & 0xff) << 16
+				             | (entries[p + 1] & 0xff) << 8
+				             | (entries[p] & 0xff);
+			}
+		} else if(bitsPerPixel != 16 && bitsPerPixel != 24 && bitsPerPixel != 32) {
+			throw new IOException("Unsupported bits per pixel: " + bitsPerPixel);
+		}
+
+		// skip to the pixels
+		long toSkip = dataOffset - read;
+		if(toSkip < 0) throw new IOException("Invalid pixel data offset: " + dataOffset);
+		while(toSkip > 0) {
+			long n = in.skip(toSkip);
+			if(n <= 0) {
+				readByte();
+				n = 1;
+			}
+			toSkip -= n;
+		}
+
+		long stride = ((long) width * bitsPerPixel + 31) / 32 * 4;
+		if(stride > Integer.MAX_VALUE) throw new IOException("The rows are too long");
+		this.line = new byte[(int) stride];
+
+		this.channel = bottomUp ? channel : null;
+		this.pixelsStart = start + dataOffset;
+	}
+
+	public boolean isBottomUp() {
+		return bottomUp && channel == null;
+	}
+
+	protected void decodeRow(int[] row, int offset) throws IOException {
+		if(channel != null) {
+			// the row y is stored (height - 1 - y) rows after the start of the pixels
+			int y = getNextRow();
+			channel.position(pixelsStart + (long) (height - 1 - y) * line.length);
+
+			ByteBuffer buffer = ByteBuffer.wrap(line);
+			while(buffer.hasRemaining()) {
+				if(channel.read(buffer) == -1) throw new EOFException();
+			}
+		} else {
+			readFully(line, 0, line.length);
+		}
+
+		switch(bitsPerPixel) {
+			case 1:
+			case 4:
+			case 8: {
+				int pixelsPerByte = 8 / bitsPerPixel;
+				int valueMask = (1 << bitsPerPixel) - 1;
+				for(int x = 0; x < width; x++) {
+					int b = line[x / pixelsPerByte] & 0xff;
+					int shift = 8 - bitsPerPixel * (x % pixelsPerByte + 1);
+					row[offset + x] = palette[(b >> shift) & valueMask];
+				}
+				break;
+			}
+			case 16:
+				for(int x = 0; x < width; x++) {
+					int value = (line[x * 2] & 0xff) | (line[x * 2 + 1] & 0xff) << 8;
+					row[offset + x] = fromBitFields(value);
+				}
+				break;
+			case 24:
+				for(int x = 0; x < width; x++) {
+					int p = x * 3;
+					row[offset + x] = 0xff000000
+					                  | (line[p + 2] & 0xff) << 16
+					                  | (line[p + 1] & 0xff) << 8
+					                  | (line[p] & 0xff);
+				}
+				break;
+			case 32:
+				for(int x = 0; x < width; x++) {
+					row[offset + x] = fromBitFields(sint(line, x * 4));
+				}
+				break;
+		}
+	}
+
+	private int fromBitFields(int value) {
+		int argb = hasAlpha ? channel(value, 3) << 24 : 0xff000000;
+		return argb | channel(value, 0) << 16 | channel(value, 1) << 8 | channel(value, 2);
+	}
+
+	private int channel(int value, int i) {
+		int max = maxValues[i];
+		if(max == 0) return 0;
+
+		int v = (value & masks[i]) >>> shifts[i];
+		return max == 0xff ? v : (int) ((v * 255L + max / 2) / max);
+	}
+
+	private static int ushort(byte[] b, int i) {
+		return (b[i] & 0xff) | (b[i + 1] & 0xff) << 8;
+	}
+
+	private static int sint(byte[] b, int i) {
+		return (b[i] & 0xff)
+		       | (b[i + 1] & 0xff) << 8
+		       | (b[i + 2] & 0xff) << 16
+		       | (b[i + 3] & 0xff) << 24;
+	}
+
+	private static long uint(byte[] b, int i) {
+		return sint(b, i) & 0xffffffffL;
+	}
+
+}
@@ -0,0 +1,116 @@
+package vulc.bitmap.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * BmpEncoder writes uncompressed BMP images: 8 bits gray, 24 bits RGB or
+ * 32 bits ARGB.<br>
+ * The images are stored top-down, so the rows can be written as they come.
+ *
+ * @author Vulcalien
+ */
+public class BmpEncoder extends ImageEncoder {
+
+	private static final int FILE_HEADER_SIZE = 14;
+	private static final int INFO_HEADER_SIZE = 40;
+	private static final int V4_HEADER_SIZE = 108;
+
+	private final int bitsPerPixel;
+	private final byte[] line;
+
+	public BmpEncoder(OutputStream out, int width, int height, int colorType) throws IOException {
+		super(out, width, height, colorType);
+
+		this.bitsPerPixel = colorType == COLOR_GRAY ? 8 : colorType * 8;
+
+		long stride = ((long) width * bitsPerPixel + 31) / 32 * 4;
+		int headerSize = colorType == COLOR_ARGB ? V4_HEADER_SIZE : INFO_HEADER_SIZE;
+		int paletteSize = colorType == COLOR_GRAY ? 256 * 4 : 0;
+
+		long dataOffset = FILE_HEADER_SIZE + headerSize + paletteSize;
+		long fileSize = dataOffset + stride * height;
+		if(fileSize > 0xffffffffL) throw new IOException("The image is too large for BMP");
+
+		this.line = new byte[(int) stride];
+
+		byte[] header = new byte[(int) dataOffset];
+
+		// FILE-HEADER
+		header[0] = 'B';
+		header[1] = 'M';
+		putInt(header, 2, (int) fileSize);
+		putInt(header, 10, (int) dataOffset);
+
+		// INFO-HEADER
+		int h = FILE_HEADER_SIZE;
+		putInt(header, h, headerSize);
+		putInt(header, h + 4, width);
+		putInt(header, h + 8, -height); // negative: top-down
+		putShort(header, h + 12, 1);
+		putShort(header, h + 14, bitsPerPixel);
+		putInt(header, h + 16, colorType == COLOR_ARGB ? 3 : 0); // BI_BITFIELDS or BI_RGB
+		putInt(header, h + 20, (int) (stride * height));
+		putInt(header, h + 24, 2835); // 72 DPI
+		putInt(header, h + 28, 2835);
+		if(colorType == COLOR_GRAY) putInt(header, h + 32, 256);
+
+		if(colorType == COLOR_ARGB) {
+			putInt(header, h + 40, 0x00ff0000);
+			putInt(header, h + 44, 0x0000ff00);
+			putInt(header, h + 48, 0x000000ff);
+			putInt(header, h + 52, 0xff000000);
+			putInt(header, h + 56, 0x73524742); // 'sRGB'
+		}
+
+		// PALETTE
+		if(colorType == COLOR_GRAY) {
+			int p = FILE_HEADER_SIZE + headerSize;
+			for(int i = 0; i < 256; i++) {
+				putInt(header, p + i * 4, i << 16 | i << 8 | i);
+			}
+		}
+		out.write(header);
+	}
+
+	protected void encodeRow(int[] row, int offset) throws IOException {
+		switch(colorType) {
+			case COLOR_GRAY:
+				for(int x = 0; x < width; x++) {
+					line[x] = (byte) row[offset + x];
+				}
+				break;
+			case COLOR_RGB:
+				for(int x = 0; x < width; x++) {
+					int color = row[offset + x];
+					int p = x * 3;
+					line[p] = (byte) color;
+					line[p + 1] = (byte) (color >> 8);
+					line[p + 2] = (byte) (color >> 16);
+				}
+				break;
+			case COLOR_ARGB:
+				for(int x = 0; x < width; x++) {
+					putInt(line, x * 4, row[offset + x]);
+				}
+				break;
+		}
+		out.write(line);
+	}
+
+	protected void encodeEnd() throws IOException {
+	}
+
+	private static void putShort(byte[] b, int i, int value) {
+		b[i] = (byte) value;
+		b[i + 1] = (byte) (value >> 8);
+	}
+
+	private static void putInt(byte[] b, int i, int value) {
+		b[i] = (byte) value;
+		b[i + 1] = (byte) (value >> 8);
+		b[i + 2] = (byte) (value >> 16);
+		b[i + 3] = (byte) (value >> 24);
+	}
+
+}
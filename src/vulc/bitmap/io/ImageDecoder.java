@@ -0,0 +1,140 @@
+package vulc.bitmap.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * ImageDecoder reads an image a row at a time, so that it can be decoded
+ * straight into a raster, or processed a few rows at a time, without
+ * holding the whole file or an intermediate frame in memory.<br>
+ * Rows are returned as non-premultiplied ARGB colors. Images without
+ * alpha have opaque pixels.
+ *
+ * @author Vulcalien
+ */
+public abstract class ImageDecoder implements Closeable {
+
+	protected final InputStream in;
+
+	protected int width, height;
+	protected boolean hasAlpha;
+
+	private int rowsRead = 0;
+
+	protected ImageDecoder(InputStream in) {
+		this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in);
+	}
+
+	/**
+	 * Returns a decoder for the image in the stream, chosen by the first
+	 * bytes of the stream: BMP, PNG and QOI are supported.
+	 */
+	public static ImageDecoder open(InputStream in) throws IOException {
+		if(!(in instanceof BufferedInputStream)) in = new BufferedInputStream(in);
+
+		byte[] magic = new byte[8];
+		in.mark(magic.length);
+		int n = 0;
+		while(n < magic.length) {
+			int read = in.read(magic, n, magic.length - n);
+			if(read == -1) break;
+			n += read;
+		}
+		in.reset();
+
+		if(n >= 2 && magic[0] == 'B' && magic[1] == 'M') return new BmpDecoder(in);
+		if(n >= 8 && PngDecoder.isSignature(magic)) return new PngDecoder(in);
+		if(n >= 4 && magic[0] == 'q' && magic[1] == 'o' && magic[2] == 'i' && magic[3] == 'f') return new QoiDecoder(in);
+
+		throw new IOException("Unknown image format");
+	}
+
+	/**
+	 * Like open(InputStream), but BMP images stored bottom-up are read from
+	 * the top, seeking to each row. The image starts at the current
+	 * position of the channel. The channel is closed by close.
+	 */
+	public static ImageDecoder open(SeekableByteChannel channel) throws IOException {
+		long start = channel.position();
+		ByteBuffer magic = ByteBuffer.allocate(2);
+		while(magic.hasRemaining() && channel.read(magic) != -1);
+		channel.position(start);
+
+		if(magic.position() == 2 && magic.get(0) == 'B' && magic.get(1) == 'M') return new BmpDecoder(channel);
+		return open(Channels.newInputStream(channel));
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public boolean hasAlpha() {
+		return hasAlpha;
+	}
+
+	/**
+	 * Returns true if the rows are stored from the bottom to the top of the
+	 * image, and so are read in that order.
+	 */
+	public boolean isBottomUp() {
+		return false;
+	}
+
+	public boolean hasMoreRows() {
+		return rowsRead < height;
+	}
+
+	/**
+	 * Returns the y of the row that will be read next, or -1 if all the
+	 * rows have been read.
+	 */
+	public int getNextRow() {
+		if(rowsRead == height) return -1;
+		return isBottomUp() ? height - 1 - rowsRead : rowsRead;
+	}
+
+	/**
+	 * Reads the next row into row, starting at offset, and returns its y.
+	 */
+	public int readRow(int[] row, int offset) throws IOException {
+		int y = getNextRow();
+		if(y == -1) throw new IllegalStateException("All the rows have been read");
+
+		decodeRow(row, offset);
+		rowsRead++;
+		return y;
+	}
+
+	protected abstract void decodeRow(int[] row, int offset) throws IOException;
+
+	protected void readFully(byte[] b, int offset, int length) throws IOException {
+		while(length > 0) {
+			int n = in.read(b, offset, length);
+			if(n == -1) throw new EOFException();
+
+			offset += n;
+			length -= n;
+		}
+	}
+
+	protected int readByte() throws IOException {
+		int b = in.read();
+		if(b == -1) throw new EOFException();
+		return b;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
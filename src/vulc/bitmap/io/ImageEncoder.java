@@ -0,0 +1,108 @@
+package vulc.bitmap.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * ImageEncoder writes an image a row at a time, from top to bottom, so
+ * rows can be written as they are produced.<br>
+ * Rows are given as non-premultiplied ARGB colors. The color type decides
+ * what is stored: COLOR_GRAY stores the blue channel as the gray level,
+ * COLOR_RGB ignores the alpha.
+ *
+ * @author Vulcalien
+ */
+public abstract class ImageEncoder implements Closeable {
+
+	public static final int COLOR_GRAY = 1;
+	public static final int COLOR_RGB = 3;
+	public static final int COLOR_ARGB = 4;
+
+	protected final OutputStream out;
+	protected final int width, height;
+	protected final int colorType;
+
+	private int rowsWritten = 0;
+	private boolean finished = false;
+
+	protected ImageEncoder(OutputStream out, int width, int height, int colorType) {
+		if(width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+		if(colorType != COLOR_GRAY && colorType != COLOR_RGB && colorType != COLOR_ARGB) {
+			throw new IllegalArgumentException("Invalid color type: " + colorType);
+		}
+		this.out = out;
+		this.width = width;
+		this.height = height;
+		this.colorType = colorType;
+	}
+
+	/**
+	 * Returns an encoder for the format: "bmp", "png" or "qoi".
+	 */
+	public static ImageEncoder create(String format, OutputStream out,
+	                                  int width, int height, int colorType) throws IOException {
+		switch(format.toLowerCase(Locale.ROOT)) {
+			case "bmp":
+				return new BmpEncoder(out, width, height, colorType);
+			case "png":
+				return new PngEncoder(out, width, height, colorType);
+			case "qoi":
+				return new QoiEncoder(out, width, height, colorType);
+		}
+		throw new IllegalArgumentException("Unknown image format: " + format);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getColorType() {
+		return colorType;
+	}
+
+	/**
+	 * Writes the next row, starting at offset in row.
+	 */
+	public void writeRow(int[] row, int offset) throws IOException {
+		if(rowsWritten == height) throw new IllegalStateException("All the rows have been written");
+
+		encodeRow(row, offset);
+		rowsWritten++;
+	}
+
+	/**
+	 * Writes the end of the file and flushes the stream, without closing
+	 * it. All the rows must have been written.
+	 */
+	public void finish() throws IOException {
+		if(finished) return;
+		if(rowsWritten != height) throw new IllegalStateException(rowsWritten + " of " + height + " rows were written");
+
+		finished = true;
+		encodeEnd();
+		out.flush();
+	}
+
+	protected abstract void encodeRow(int[] row, int offset) throws IOException;
+
+	protected abstract void encodeEnd() throws IOException;
+
+	/**
+	 * Finishes the file, if all the rows were written, and closes the
+	 * stream.
+	 */
+	public void close() throws IOException {
+		try {
+			if(rowsWritten == height) finish();
+		} finally {
+			out.close();
+		}
+	}
+
+}
@@ -0,0 +1,269 @@
+package vulc.bitmap.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import vulc.bitmap.ArgbBitmap;
+import vulc.bitmap.Bitmap;
+import vulc.bitmap.BoolBitmap;
+import vulc.bitmap.ByteBitmap;
+import vulc.bitmap.IntBitmap;
+import vulc.bitmap.raster.BitRaster;
+import vulc.bitmap.raster.ByteRaster;
+import vulc.bitmap.raster.IntBlender;
+import vulc.bitmap.raster.IntRaster;
+import vulc.bitmap.raster.Raster;
+
+/**
+ * Images reads and writes bitmaps in the BMP, PNG and QOI formats, without
+ * AWT. Each row is decoded straight into the raster, or encoded straight
+ * from it: only a row is kept besides the bitmap.<br>
+ * The streams are not closed.
+ *
+ * @author Vulcalien
+ */
+public final class Images {
+
+	private Images() {
+	}
+
+	// READ
+
+	public static IntBitmap read(InputStream in) throws IOException {
+		ImageDecoder decoder = ImageDecoder.open(in);
+		IntBitmap bitmap = new IntBitmap(decoder.getWidth(), decoder.getHeight());
+		read(decoder, bitmap);
+		return bitmap;
+	}
+
+	public static IntBitmap read(File file) throws IOException {
+		try(InputStream in = Files.newInputStream(file.toPath())) {
+			return read(in);
+		}
+	}
+
+	public static ArgbBitmap readArgb(InputStream in) throws IOException {
+		ImageDecoder decoder = ImageDecoder.open(in);
+		ArgbBitmap bitmap = new ArgbBitmap(decoder.getWidth(), decoder.getHeight());
+		read(decoder, bitmap);
+		return bitmap;
+	}
+
+	/**
+	 * Reads the image as gray levels: the luminance of each pixel.
+	 */
+	public static ByteBitmap readGray(InputStream in) throws IOException {
+		ImageDecoder decoder = ImageDecoder.open(in);
+		ByteBitmap bitmap = new ByteBitmap(decoder.getWidth(), decoder.getHeight());
+		readGray(decoder, bitmap.raster);
+		return bitmap;
+	}
+
+	/**
+	 * Reads the image as a BoolBitmap whose true pixels are the ones whose
+	 * color is trueColor.
+	 */
+	public static BoolBitmap readBool(InputStream in, int trueColor) throws IOException {
+		ImageDecoder decoder = ImageDecoder.open(in);
+		BoolBitmap bitmap = new BoolBitmap(decoder.getWidth(), decoder.getHeight());
+		readBool(decoder, bitmap.raster, trueColor);
+		return bitmap;
+	}
+
+	/**
+	 * Reads the rest of the image into the bitmap, that must have the same
+	 * size. If the bitmap is an ArgbBitmap the pixels are premultiplied,
+	 * otherwise their alpha is removed.
+	 */
+	public static void read(ImageDecoder decoder, Bitmap<Integer> bitmap) throws IOException {
+		Raster<Integer> raster = bitmap.raster;
+		checkSize(decoder, raster);
+
+		boolean premultiply = bitmap instanceof ArgbBitmap;
+		int w = raster.width;
+
+		int[] row;
+		int[] array = raster instanceof IntRaster ? ((IntRaster) raster).getArray() : null;
+		IntRaster rowRaster = null;
+		if(array != null) {
+			row = array;
+		} else {
+			row = new int[w];
+			rowRaster = new IntRaster(w, 1, row);
+		}
+
+		while(decoder.hasMoreRows()) {
+			int offset = array != null ? decoder.getNextRow() * w : 0;
+			int y = decoder.readRow(row, offset);
+
+			convertRow(row, offset, w, premultiply);
+			if(rowRaster != null) raster.copyPixels(y * w, rowRaster, 0, w);
+		}
+		bitmap.markDirty(0, 0, bitmap.width, bitmap.height);
+	}
+
+	public static void readGray(ImageDecoder decoder, Raster<Byte> raster) throws IOException {
+		checkSize(decoder, raster);
+
+		int w = raster.width;
+		int[] row = new int[w];
+		ByteRaster bytes = raster instanceof ByteRaster ? (ByteRaster) raster : null;
+
+		while(decoder.hasMoreRows()) {
+			int y = decoder.readRow(row, 0);
+			for(int x = 0; x < w; x++) {
+				byte gray = (byte) luminance(row[x]);
+				if(bytes != null) bytes.setByte(x + y * w, gray);
+				else raster.setPixel(x + y * w, gray);
+			}
+		}
+	}
+
+	public static void readBool(ImageDecoder decoder, Raster<Boolean> raster, int trueColor) throws IOException {
+		checkSize(decoder, raster);
+
+		int w = raster.width;
+		int[] row = new int[w];
+		BitRaster bits = raster instanceof BitRaster ? (BitRaster) raster : null;
+
+		while(decoder.hasMoreRows()) {
+			int y = decoder.readRow(row, 0);
+			for(int x = 0; x < w; x++) {
+				boolean value = (row[x] & 0xffffff) == trueColor;
+				if(bits != null) bits.setBool(x + y * w, value);
+				else raster.setPixel(x + y * w, value);
+			}
+		}
+	}
+
+	// converts decoded pixels to premultiplied ARGB, or to RGB
+	static void convertRow(int[] row, int offset, int length, boolean premultiply) {
+		if(premultiply) {
+			for(int i = offset; i < offset + length; i++) {
+				row[i] = IntBlender.premultiply(row[i]);
+			}
+		} else {
+			for(int i = offset; i < offset + length; i++) {
+				row[i] &= 0xffffff;
+			}
+		}
+	}
+
+	private static void checkSize(ImageDecoder decoder, Raster<?> raster) {
+		if(decoder.getWidth() != raster.width || decoder.getHeight() != raster.height) {
+			throw new IllegalArgumentException("The image is " + decoder.getWidth() + "x" + decoder.getHeight()
+			                                   + ", the raster is " + raster.width + "x" + raster.height);
+		}
+	}
+
+	/**
+	 * Returns the luminance of the color, from 0 to 255. Gray colors keep
+	 * their level.
+	 */
+	public static int luminance(int rgb) {
+		int r = rgb >> 16 & 0xff;
+		int g = rgb >> 8 & 0xff;
+		int b = rgb & 0xff;
+		return (r * 77 + g * 150 + b * 29 + 128) >> 8;
+	}
+
+	// WRITE
+
+	/**
+	 * Writes the bitmap in the format: "bmp", "png" or "qoi". An ArgbBitmap
+	 * is written with its alpha.
+	 */
+	public static void write(Bitmap<Integer> bitmap, String format, OutputStream out) throws IOException {
+		boolean argb = bitmap instanceof ArgbBitmap;
+		int colorType = argb ? ImageEncoder.COLOR_ARGB : ImageEncoder.COLOR_RGB;
+
+		ImageEncoder encoder = ImageEncoder.create(format, out, bitmap.width, bitmap.height, colorType);
+		write(bitmap.raster, argb, encoder);
+		encoder.finish();
+	}
+
+	public static void write(Bitmap<Integer> bitmap, String format, File file) throws IOException {
+		try(OutputStream out = Files.newOutputStream(file.toPath())) {
+			write(bitmap, format, out);
+		}
+	}
+
+	/**
+	 * Writes the rows of the raster. If premultiplied is true, the pixels
+	 * are premultiplied ARGB colors.
+	 */
+	public static void write(Raster<Integer> raster, boolean premultiplied, ImageEncoder encoder) throws IOException {
+		int w = raster.width;
+		int[] array = raster instanceof IntRaster ? ((IntRaster) raster).getArray() : null;
+
+		int[] row = new int[w];
+		IntRaster rowRaster = new IntRaster(w, 1, row);
+		for(int y = 0; y < raster.height; y++) {
+			if(array != null && !premultiplied) {
+				encoder.writeRow(array, y * w);
+				continue;
+			}
+
+			if(array != null) System.arraycopy(array, y * w, row, 0, w);
+			else rowRaster.copyPixels(0, raster, y * w, w);
+
+			if(premultiplied) {
+				for(int x = 0; x < w; x++) {
+					row[x] = IntBlender.unpremultiply(row[x]);
+				}
+			}
+			encoder.writeRow(row, 0);
+		}
+	}
+
+	/**
+	 * Writes the bitmap as a gray image.
+	 */
+	public static void writeGray(Bitmap<Byte> bitmap, String format, OutputStream out) throws IOException {
+		ImageEncoder encoder = ImageEncoder.create(format, out, bitmap.width, bitmap.height, ImageEncoder.COLOR_GRAY);
+		writeGray(bitmap.raster, encoder);
+		encoder.finish();
+	}
+
+	public static void writeGray(Raster<Byte> raster, ImageEncoder encoder) throws IOException {
+		ByteRaster bytes = raster instanceof ByteRaster ? (ByteRaster) raster : null;
+
+		int w = raster.width;
+		int[] row = new int[w];
+		for(int y = 0; y < raster.height; y++) {
+			for(int x = 0; x < w; x++) {
+				byte gray = bytes != null ? bytes.getByte(x + y * w) : raster.getPixel(x + y * w);
+				row[x] = gray & 0xff;
+			}
+			encoder.writeRow(row, 0);
+		}
+	}
+
+	/**
+	 * Writes the bitmap as a gray image: true pixels are white, false
+	 * pixels are black.
+	 */
+	public static void writeBool(Bitmap<Boolean> bitmap, String format, OutputStream out) throws IOException {
+		ImageEncoder encoder = ImageEncoder.create(format, out, bitmap.width, bitmap.height, ImageEncoder.COLOR_GRAY);
+		writeBool(bitmap.raster, encoder);
+		encoder.finish();
+	}
+
+	public static void writeBool(Raster<Boolean> raster, ImageEncoder encoder) throws IOException {
+		BitRaster bits = raster instanceof BitRaster ? (BitRaster) raster : null;
+
+		int w = raster.width;
+		int[] row = new int[w];
+		for(int y = 0; y < raster.height; y++) {
+			for(int x = 0; x < w; x++) {
+				boolean value = bits != null ? bits.getBool(x + y * w) : raster.getPixel(x + y * w);
+				row[x] = value ? 0xff : 0;
+			}
+			encoder.writeRow(row, 0);
+		}
+	}
+
+}
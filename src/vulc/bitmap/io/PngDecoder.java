@@ -0,0 +1,420 @@
+package vulc.bitmap.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * PngDecoder reads PNG images of every color type and bit depth. The
+ * image data is inflated as the rows are read, so only two rows are kept
+ * in memory.<br>
+ * Interlaced images are not supported, because their rows are only
+ * complete at the end of the file.
+ *
+ * @author Vulcalien
+ */
+public class PngDecoder extends ImageDecoder {
+
+	private static final byte[] SIGNATURE = {
+		(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'
+	};
+
+	private static final int COLOR_GRAY = 0;
+	private static final int COLOR_RGB = 2;
+	private static final int COLOR_INDEXED = 3;
+	private static final int COLOR_GRAY_ALPHA = 4;
+	private static final int COLOR_RGBA = 6;
+
+	private final int bitDepth;
+	private final int colorType;
+
+	private int[] palette;
+
+	// the sample values that are transparent, -1 if none
+	private int transparentGray = -1;
+	private long transparentRgb = -1;
+
+	// the bytes per complete pixel, at least 1
+	private final int bytesPerPixel;
+	private byte[] line, previousLine;
+
+	private final CRC32 crc = new CRC32();
+	private final Inflater inflater = new Inflater();
+	private final InflaterInputStream data;
+
+	// the bytes left in the current chunk, and its type
+	private long chunkRemaining;
+	private int chunkType;
+
+	public PngDecoder(InputStream in) throws IOException {
+		super(in);
+
+		byte[] signature = new byte[8];
+		readFully(signature, 0, signature.length);
+		if(!isSignature(signature)) throw new IOException("Not a PNG image");
+
+		// IHDR
+		nextChunk();
+		if(chunkType != type("IHDR") || chunkRemaining != 13) throw new IOException("The first chunk is not IHDR");
+
+		width = readChunkInt();
+		height = readChunkInt();
+		bitDepth = readChunkByte();
+		colorType = readChunkByte();
+		int compression = readChunkByte();
+		int filter = readChunkByte();
+		int interlace = readChunkByte();
+		endChunk();
+
+		if(width <= 0 || height <= 0) throw new IOException("Invalid size: " + width + "x" + height);
+		if(compression != 0 || filter != 0) throw new IOException("Invalid compression or filter method");
+		if(interlace != 0) throw new IOException("Interlaced PNG images are not supported");
+
+		int channels;
+		switch(colorType) {
+			case COLOR_GRAY:
+				channels = 1;
+				break;
+			case COLOR_RGB:
+				channels = 3;
+				break;
+			case COLOR_INDEXED:
+				channels = 1;
+				break;
+			case COLOR_GRAY_ALPHA:
+				channels = 2;
+				break;
+			case COLOR_RGBA:
+				channels = 4;
+				break;
+			default:
+				throw new IOException("Invalid color type: " + colorType);
+		}
+		boolean validDepth;
+		if(colorType == COLOR_GRAY) {
+			validDepth = bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16;
+		} else if(colorType == COLOR_INDEXED) {
+			validDepth = bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8;
+		} else {
+			validDepth = bitDepth == 8 || bitDepth == 16;
+		}
+		if(!validDepth) throw new IOException("Invalid bit depth " + bitDepth + " for color type " + colorType);
+
+		this.hasAlpha = colorType == COLOR_GRAY_ALPHA || colorType == COLOR_RGBA;
+
+		// the chunks before the image data
+		while(true) {
+			nextChunk();
+			if(chunkType == type("IDAT")) break;
+
+			if(chunkType == type("PLTE")) {
+				readPalette();
+			} else if(chunkType == type("tRNS")) {
+				readTransparency();
+			} else if(chunkType == type("IEND")) {
+				throw new IOException("The image has no data");
+			} else if((chunkType & 0x20000000) == 0) {
+				throw new IOException("Unknown critical chunk: " + typeName(chunkType));
+			}
+			endChunk();
+		}
+		if(colorType == COLOR_INDEXED && palette == null) throw new IOException("The image has no palette");
+
+		long bitsPerPixel = (long) bitDepth * channels;
+		long lineSize = (width * bitsPerPixel + 7) / 8;
+		if(lineSize > Integer.MAX_VALUE - 1) throw new IOException("The rows are too long");
+
+		this.bytesPerPixel = (int) Math.max(1, bitsPerPixel / 8);
+		this.line = new byte[(int) lineSize];
+		this.previousLine = new byte[(int) lineSize];
+
+		this.data = new InflaterInputStream(new DataStream(), inflater, 16384);
+	}
+
+	static boolean isSignature(byte[] b) {
+		for(int i = 0; i < SIGNATURE.length; i++) {
+			if(b[i] != SIGNATURE[i]) return false;
+		}
+		return true;
+	}
+
+	private void readPalette() throws IOException {
+		if(chunkRemaining % 3 != 0 || chunkRemaining > 256 * 3) throw new IOException("Invalid palette");
+
+		int size = (int) (chunkRemaining / 3);
+		palette = new int[256];
+		for(int i = 0; i < 256; i++) {
+			palette[i] = 0xff000000;
+		}
+		for(int i = 0; i < size; i++) {
+			int r = readChunkByte();
+			int g = readChunkByte();
+			int b = readChunkByte();
+			palette[i] = 0xff000000 | r << 16 | g << 8 | b;
+		}
+	}
+
+	private void readTransparency() throws IOException {
+		if(colorType == COLOR_GRAY) {
+			transparentGray = readChunkShort();
+		} else if(colorType == COLOR_RGB) {
+			long r = readChunkShort();
+			long g = readChunkShort();
+			long b = readChunkShort();
+			transparentRgb = r << (bitDepth * 2) | g << bitDepth | b;
+		} else if(colorType == COLOR_INDEXED) {
+			if(palette == null) throw new IOException("tRNS before PLTE");
+			for(int i = 0; chunkRemaining > 0; i++) {
+				int alpha = readChunkByte();
+				if(i < palette.length) palette[i] = (palette[i] & 0xffffff) | alpha << 24;
+			}
+		} else {
+			return;
+		}
+		hasAlpha = true;
+	}
+
+	protected void decodeRow(int[] row, int offset) throws IOException {
+		byte[] previous = line;
+		line = previousLine;
+		previousLine = previous;
+
+		int filter = data.read();
+		if(filter == -1) throw new EOFException();
+
+		int n = 0;
+		while(n < line.length) {
+			int read = data.read(line, n, line.length - n);
+			if(read == -1) throw new EOFException();
+			n += read;
+		}
+		unfilter(filter);
+
+		switch(colorType) {
+			case COLOR_GRAY:
+				decodeGray(row, offset);
+				break;
+			case COLOR_RGB: {
+				int step = bitDepth / 8 * 3;
+				int channel = bitDepth / 8;
+				for(int x = 0; x < width; x++) {
+					int p = x * step;
+					int rgb = (line[p] & 0xff) << 16
+					          | (line[p + channel] & 0xff) << 8
+					          | (line[p + channel * 2] & 0xff);
+
+					boolean transparent = transparentRgb != -1 && rgbSamples(p, channel) == transparentRgb;
+					row[offset + x] = transparent ? rgb : 0xff000000 | rgb;
+				}
+				break;
+			}
+			case COLOR_INDEXED: {
+				int pixelsPerByte = 8 / bitDepth;
+				int valueMask = (1 << bitDepth) - 1;
+				for(int x = 0; x < width; x++) {
+					int b = line[x / pixelsPerByte] & 0xff;
+					int shift = 8 - bitDepth * (x % pixelsPerByte + 1);
+					row[offset + x] = palette[(b >> shift) & valueMask];
+				}
+				break;
+			}
+			case COLOR_GRAY_ALPHA: {
+				int step = bitDepth / 8 * 2;
+				int channel = bitDepth / 8;
+				for(int x = 0; x < width; x++) {
+					int p = x * step;
+					int gray = line[p] & 0xff;
+					int alpha = line[p + channel] & 0xff;
+					row[offset + x] = alpha << 24 | gray << 16 | gray << 8 | gray;
+				}
+				break;
+			}
+			case COLOR_RGBA: {
+				int step = bitDepth / 8 * 4;
+				int channel = bitDepth / 8;
+				for(int x = 0; x < width; x++) {
+					int p = x * step;
+					row[offset + x] = (line[p + channel * 3] & 0xff) << 24
+					                  | (line[p] & 0xff) << 16
+					                  | (line[p + channel] & 0xff) << 8
+					                  | (line[p + channel * 2] & 0xff);
+				}
+				break;
+			}
+		}
+	}
+
+	// the samples of the pixel, with all their bits
+	private long rgbSamples(int p, int channel) {
+		if(channel == 1) {
+			return (line[p] & 0xff) << 16 | (line[p + 1] & 0xff) << 8 | (line[p + 2] & 0xff);
+		}
+		long r = (line[p] & 0xff) << 8 | (line[p + 1] & 0xff);
+		long g = (line[p + 2] & 0xff) << 8 | (line[p + 3] & 0xff);
+		long b = (line[p + 4] & 0xff) << 8 | (line[p + 5] & 0xff);
+		return r << 32 | g << 16 | b;
+	}
+
+	private void decodeGray(int[] row, int offset) {
+		if(bitDepth >= 8) {
+			int step = bitDepth / 8;
+			for(int x = 0; x < width; x++) {
+				int p = x * step;
+				int sample = bitDepth == 8 ? line[p] & 0xff : (line[p] & 0xff) << 8 | (line[p + 1] & 0xff);
+				int gray = line[p] & 0xff;
+
+				int alpha = sample == transparentGray ? 0 : 0xff000000;
+				row[offset + x] = alpha | gray << 16 | gray << 8 | gray;
+			}
+		} else {
+			int pixelsPerByte = 8 / bitDepth;
+			int maxValue = (1 << bitDepth) - 1;
+			for(int x = 0; x < width; x++) {
+				int b = line[x / pixelsPerByte] & 0xff;
+				int shift = 8 - bitDepth * (x % pixelsPerByte + 1);
+				int sample = (b >> shift) & maxValue;
+				int gray = sample * 255 / maxValue;
+
+				int alpha = sample == transparentGray ? 0 : 0xff000000;
+				row[offset + x] = alpha | gray << 16 | gray << 8 | gray;
+			}
+		}
+	}
+
+	private void unfilter(int filter) throws IOException {
+		byte[] line = this.line;
+		byte[] prev = this.previousLine;
+		int bpp = bytesPerPixel;
+
+		switch(filter) {
+			case 0: // None
+				break;
+			case 1: // Sub
+				for(int i = bpp; i < line.length; i++) {
+					line[i] += line[i - bpp];
+				}
+				break;
+			case 2: // Up
+				for(int i = 0; i < line.length; i++) {
+					line[i] += prev[i];
+				}
+				break;
+			case 3: // Average
+				for(int i = 0; i < line.length; i++) {
+					int left = i >= bpp ? line[i - bpp] & 0xff : 0;
+					line[i] += (left + (prev[i] & 0xff)) >> 1;
+				}
+				break;
+			case 4: // Paeth
+				for(int i = 0; i < line.length; i++) {
+					int a = i >= bpp ? line[i - bpp] & 0xff : 0;
+					int b = prev[i] & 0xff;
+					int c = i >= bpp ? prev[i - bpp] & 0xff : 0;
+					line[i] += paeth(a, b, c);
+				}
+				break;
+			default:
+				throw new IOException("Invalid filter type: " + filter);
+		}
+	}
+
+	static int paeth(int a, int b, int c) {
+		int p = a + b - c;
+		int pa = Math.abs(p - a);
+		int pb = Math.abs(p - b);
+		int pc = Math.abs(p - c);
+
+		if(pa <= pb && pa <= pc) return a;
+		if(pb <= pc) return b;
+		return c;
+	}
+
+	// CHUNKS
+
+	static int type(String name) {
+		return name.charAt(0) << 24 | name.charAt(1) << 16 | name.charAt(2) << 8 | name.charAt(3);
+	}
+
+	private static String typeName(int type) {
+		return new String(new char[] {
+			(char) (type >>> 24), (char) (type >> 16 & 0xff), (char) (type >> 8 & 0xff), (char) (type & 0xff)
+		});
+	}
+
+	private void nextChunk() throws IOException {
+		long length = (long) readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+		if(length > Integer.MAX_VALUE) throw new IOException("Invalid chunk length: " + length);
+
+		crc.reset();
+		chunkRemaining = 4;
+		chunkType = readChunkInt();
+		chunkRemaining = length;
+	}
+
+	private void endChunk() throws IOException {
+		while(chunkRemaining > 0) {
+			readChunkByte();
+		}
+		int expected = readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+		if((int) crc.getValue() != expected) throw new IOException("Wrong CRC in chunk " + typeName(chunkType));
+	}
+
+	private int readChunkByte() throws IOException {
+		if(chunkRemaining == 0) throw new IOException("Chunk " + typeName(chunkType) + " is too short");
+		chunkRemaining--;
+
+		int b = readByte();
+		crc.update(b);
+		return b;
+	}
+
+	private int readChunkShort() throws IOException {
+		return readChunkByte() << 8 | readChunkByte();
+	}
+
+	private int readChunkInt() throws IOException {
+		return readChunkByte() << 24 | readChunkByte() << 16 | readChunkByte() << 8 | readChunkByte();
+	}
+
+	public void close() throws IOException {
+		inflater.end();
+		super.close();
+	}
+
+	// the content of the IDAT chunks, one after the other
+	private class DataStream extends InputStream {
+
+		private boolean ended = false;
+
+		private boolean nextData() throws IOException {
+			while(!ended && chunkRemaining == 0) {
+				endChunk();
+				nextChunk();
+				if(chunkType != type("IDAT")) ended = true;
+			}
+			return !ended;
+		}
+
+		public int read() throws IOException {
+			if(!nextData()) return -1;
+			return readChunkByte();
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0) return 0;
+			if(!nextData()) return -1;
+
+			int n = in.read(b, off, (int) Math.min(len, chunkRemaining));
+			if(n == -1) throw new EOFException();
+
+			crc.update(b, off, n);
+			chunkRemaining -= n;
+			return n;
+		}
+
+	}
+
+}
@@ -0,0 +1,231 @@
+package vulc.bitmap.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * PngEncoder writes 8 bit PNG images: gray, RGB or RGBA.<br>
+ * Each row is deflated as soon as it is written, with the filter that is
+ * likely to compress it the best, and the compressed data is written in
+ * IDAT chunks of up to 64KB.
+ *
+ * @author Vulcalien
+ */
+public class PngEncoder extends ImageEncoder {
+
+	private static final byte[] SIGNATURE = {
+		(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'
+	};
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private final int bytesPerPixel;
+	private byte[] line, previousLine;
+
+	// the row filtered with each of the five filters, after the filter type
+	private final byte[][] filtered = new byte[5][];
+
+	private final Deflater deflater;
+	private final DataStream chunks = new DataStream();
+	private final DeflaterOutputStream data;
+
+	public PngEncoder(OutputStream out, int width, int height, int colorType) throws IOException {
+		this(out, width, height, colorType, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates an encoder that uses the given compression level, from 0 to 9.
+	 */
+	public PngEncoder(OutputStream out, int width, int height, int colorType, int compressionLevel) throws IOException {
+		super(out, width, height, colorType);
+
+		this.bytesPerPixel = colorType;
+		long lineSize = (long) width * bytesPerPixel;
+		if(lineSize > Integer.MAX_VALUE - 1) throw new IOException("The rows are too long");
+
+		this.line = new byte[(int) lineSize];
+		this.previousLine = new byte[(int) lineSize];
+		for(int i = 0; i < filtered.length; i++) {
+			filtered[i] = new byte[(int) lineSize + 1];
+			filtered[i][0] = (byte) i;
+		}
+
+		out.write(SIGNATURE);
+
+		byte[] header = new byte[13];
+		putInt(header, 0, width);
+		putInt(header, 4, height);
+		header[8] = 8;
+		header[9] = (byte) (colorType == COLOR_GRAY ? 0 : colorType == COLOR_RGB ? 2 : 6);
+		writeChunk("IHDR", header, 0, header.length);
+
+		this.deflater = new Deflater(compressionLevel);
+		this.data = new DeflaterOutputStream(chunks, deflater, 16384);
+	}
+
+	protected void encodeRow(int[] row, int offset) throws IOException {
+		byte[] previous = line;
+		line = previousLine;
+		previousLine = previous;
+
+		switch(colorType) {
+			case COLOR_GRAY:
+				for(int x = 0; x < width; x++) {
+					line[x] = (byte) row[offset + x];
+				}
+				break;
+			case COLOR_RGB:
+				for(int x = 0; x < width; x++) {
+					int color = row[offset + x];
+					int p = x * 3;
+					line[p] = (byte) (color >> 16);
+					line[p + 1] = (byte) (color >> 8);
+					line[p + 2] = (byte) color;
+				}
+				break;
+			case COLOR_ARGB:
+				for(int x = 0; x < width; x++) {
+					int color = row[offset + x];
+					int p = x * 4;
+					line[p] = (byte) (color >> 16);
+					line[p + 1] = (byte) (color >> 8);
+					line[p + 2] = (byte) color;
+					line[p + 3] = (byte) (color >>> 24);
+				}
+				break;
+		}
+		data.write(filter());
+	}
+
+	// returns the filtered row with the lowest sum of absolute values
+	private byte[] filter() {
+		byte[] line = this.line;
+		byte[] prev = this.previousLine;
+		int bpp = bytesPerPixel;
+
+		byte[] none = filtered[0];
+		byte[] sub = filtered[1];
+		byte[] up = filtered[2];
+		byte[] average = filtered[3];
+		byte[] paeth = filtered[4];
+
+		long noneSum = 0, subSum = 0, upSum = 0, averageSum = 0, paethSum = 0;
+		for(int i = 0; i < line.length; i++) {
+			int x = line[i] & 0xff;
+			int a = i >= bpp ? line[i - bpp] & 0xff : 0;
+			int b = prev[i] & 0xff;
+			int c = i >= bpp ? prev[i - bpp] & 0xff : 0;
+
+			byte v;
+			none[i + 1] = v = (byte) x;
+			noneSum += Math.abs(v);
+			sub[i + 1] = v = (byte) (x - a);
+			subSum += Math.abs(v);
+			up[i + 1] = v = (byte) (x - b);
+			upSum += Math.abs(v);
+			average[i + 1] = v = (byte) (x - ((a + b) >> 1));
+			averageSum += Math.abs(v);
+			paeth[i + 1] = v = (byte) (x - PngDecoder.paeth(a, b, c));
+			paethSum += Math.abs(v);
+		}
+
+		byte[] best = none;
+		long bestSum = noneSum;
+		if(subSum < bestSum) {
+			best = sub;
+			bestSum = subSum;
+		}
+		if(upSum < bestSum) {
+			best = up;
+			bestSum = upSum;
+		}
+		if(averageSum < bestSum) {
+			best = average;
+			bestSum = averageSum;
+		}
+		if(paethSum < bestSum) {
+			best = paeth;
+		}
+		return best;
+	}
+
+	protected void encodeEnd() throws IOException {
+		data.finish();
+		chunks.flushChunk();
+		deflater.end();
+
+		writeChunk("IEND", new byte[0], 0, 0);
+	}
+
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private void writeChunk(String type, byte[] b, int offset, int length) throws IOException {
+		byte[] typeBytes = {
+			(byte) type.charAt(0), (byte) type.charAt(1), (byte) type.charAt(2), (byte) type.charAt(3)
+		};
+
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(b, offset, length);
+
+		byte[] header = new byte[8];
+		putInt(header, 0, length);
+		System.arraycopy(typeBytes, 0, header, 4, 4);
+
+		byte[] footer = new byte[4];
+		putInt(footer, 0, (int) crc.getValue());
+
+		out.write(header);
+		out.write(b, offset, length);
+		out.write(footer);
+	}
+
+	private static void putInt(byte[] b, int i, int value) {
+		b[i] = (byte) (value >> 24);
+		b[i + 1] = (byte) (value >> 16);
+		b[i + 2] = (byte) (value >> 8);
+		b[i + 3] = (byte) value;
+	}
+
+	// writes the compressed data in IDAT chunks
+	private class DataStream extends OutputStream {
+
+		private final byte[] buffer = new byte[CHUNK_SIZE];
+		private int size = 0;
+
+		public void write(int b) throws IOException {
+			if(size == buffer.length) flushChunk();
+			buffer[size++] = (byte) b;
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			while(len > 0) {
+				if(size == buffer.length) flushChunk();
+
+				int n = Math.min(len, buffer.length - size);
+				System.arraycopy(b, off, buffer, size, n);
+				size += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		void flushChunk() throws IOException {
+			if(size == 0) return;
+
+			writeChunk("IDAT", buffer, 0, size);
+			size = 0;
+		}
+
+	}
+
+}
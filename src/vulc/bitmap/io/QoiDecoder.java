@@ -0,0 +1,135 @@
+package vulc.bitmap.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * QoiDecoder reads QOI images.
+ *
+ * @author Vulcalien
+ */
+public class QoiDecoder extends ImageDecoder {
+
+	static final int OP_INDEX = 0x00;
+	static final int OP_DIFF = 0x40;
+	static final int OP_LUMA = 0x80;
+	static final int OP_RUN = 0xc0;
+	static final int OP_RGB = 0xfe;
+	static final int OP_RGBA = 0xff;
+
+	private final int[] index = new int[64];
+	private int pixel = 0xff000000;
+	private int run = 0;
+
+	// the bytes are read from the stream a block at a time
+	private final byte[] buffer = new byte[8192];
+	private int position = 0, limit = 0;
+
+	public QoiDecoder(InputStream in) throws IOException {
+		super(in);
+
+		byte[] header = new byte[14];
+		readFully(header, 0, header.length);
+		if(header[0] != 'q' || header[1] != 'o' || header[2] != 'i' || header[3] != 'f') {
+			throw new IOException("Not a QOI image");
+		}
+		long w = readInt(header, 4) & 0xffffffffL;
+		long h = readInt(header, 8) & 0xffffffffL;
+		if(w == 0 || h == 0 || w > Integer.MAX_VALUE || h > Integer.MAX_VALUE) {
+			throw new IOException("Invalid size: " + w + "x" + h);
+		}
+		this.width = (int) w;
+		this.height = (int) h;
+
+		int channels = header[12];
+		if(channels != 3 && channels != 4) throw new IOException("Invalid number of channels: " + channels);
+		this.hasAlpha = channels == 4;
+	}
+
+	static int hash(int argb) {
+		int a = argb >>> 24;
+		int r = argb >> 16 & 0xff;
+		int g = argb >> 8 & 0xff;
+		int b = argb & 0xff;
+		return (r * 3 + g * 5 + b * 7 + a * 11) & 63;
+	}
+
+	protected void decodeRow(int[] row, int offset) throws IOException {
+		int pixel = this.pixel;
+		int run = this.run;
+
+		for(int x = 0; x < width; x++) {
+			if(run > 0) {
+				run--;
+			} else {
+				int b1 = next();
+				if(b1 == OP_RGB) {
+					int r = next();
+					int g = next();
+					int b = next();
+					pixel = (pixel & 0xff000000) | r << 16 | g << 8 | b;
+				} else if(b1 == OP_RGBA) {
+					int r = next();
+					int g = next();
+					int b = next();
+					int a = next();
+					pixel = a << 24 | r << 16 | g << 8 | b;
+				} else {
+					switch(b1 & 0xc0) {
+						case OP_INDEX:
+							pixel = index[b1];
+							break;
+						case OP_DIFF: {
+							int dr = (b1 >> 4 & 3) - 2;
+							int dg = (b1 >> 2 & 3) - 2;
+							int db = (b1 & 3) - 2;
+							pixel = add(pixel, dr, dg, db);
+							break;
+						}
+						case OP_LUMA: {
+							int b2 = next();
+							int dg = (b1 & 0x3f) - 32;
+							int dr = dg - 8 + (b2 >> 4);
+							int db = dg - 8 + (b2 & 0x0f);
+							pixel = add(pixel, dr, dg, db);
+							break;
+						}
+						case OP_RUN:
+							run = b1 & 0x3f;
+							break;
+					}
+				}
+				index[hash(pixel)] = pixel;
+			}
+			row[offset + x] = pixel;
+		}
+
+		this.pixel = pixel;
+		this.run = run;
+	}
+
+	private int next() throws IOException {
+		if(position == limit) {
+			limit = in.read(buffer, 0, buffer.length);
+			position = 0;
+			if(limit <= 0) {
+				limit = 0;
+				throw new EOFException();
+			}
+		}
+		return buffer[position++] & 0xff;
+	}
+
+	private static int add(int argb, int dr, int dg, int db) {
+		int r = (argb >> 16) + dr & 0xff;
+		int g = (argb >> 8) + dg & 0xff;
+		int b = argb + db & 0xff;
+		return (argb & 0xff000000) | r << 16 | g << 8 | b;
+	}
+
+	private static int readInt(byte[] b, int i) {
+		return (b[i] & 0xff) << 24 | (b[i + 1] & 0xff) << 16 | (b[i + 2] & 0xff) << 8 | (b[i + 3] & 0xff);
+	}
+
+}
@@ -0,0 +1,126 @@
+package vulc.bitmap.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * QoiEncoder writes QOI images, with 4 channels if the color type is
+ * COLOR_ARGB and 3 otherwise.
+ *
+ * @author Vulcalien
+ */
+public class QoiEncoder extends ImageEncoder {
+
+	private final int[] index = new int[64];
+	private int pixel = 0xff000000;
+	private int run = 0;
+
+	private final byte[] buffer = new byte[8192];
+	private int size = 0;
+
+	public QoiEncoder(OutputStream out, int width, int height, int colorType) throws IOException {
+		super(out, width, height, colorType);
+
+		byte[] header = new byte[14];
+		header[0] = 'q';
+		header[1] = 'o';
+		header[2] = 'i';
+		header[3] = 'f';
+		putInt(header, 4, width);
+		putInt(header, 8, height);
+		header[12] = (byte) (colorType == COLOR_ARGB ? 4 : 3);
+		header[13] = 0; // sRGB with linear alpha
+		out.write(header);
+	}
+
+	protected void encodeRow(int[] row, int offset) throws IOException {
+		byte[] buffer = this.buffer;
+		int size = this.size;
+		int previous = this.pixel;
+		int run = this.run;
+
+		for(int x = 0; x < width; x++) {
+			// a pixel adds at most a run and a 5 bytes chunk
+			if(size > buffer.length - 6) {
+				out.write(buffer, 0, size);
+				size = 0;
+			}
+
+			int color = row[offset + x];
+			if(colorType == COLOR_GRAY) {
+				int gray = color & 0xff;
+				color = 0xff000000 | gray << 16 | gray << 8 | gray;
+			} else if(colorType == COLOR_RGB) {
+				color |= 0xff000000;
+			}
+
+			if(color == previous) {
+				run++;
+				if(run == 62) {
+					buffer[size++] = (byte) (QoiDecoder.OP_RUN | run - 1);
+					run = 0;
+				}
+				continue;
+			}
+			if(run > 0) {
+				buffer[size++] = (byte) (QoiDecoder.OP_RUN | run - 1);
+				run = 0;
+			}
+
+			int hash = QoiDecoder.hash(color);
+			if(index[hash] == color) {
+				buffer[size++] = (byte) hash;
+			} else {
+				index[hash] = color;
+
+				if((color ^ previous) >>> 24 == 0) {
+					int dr = (byte) ((color >> 16) - (previous >> 16));
+					int dg = (byte) ((color >> 8) - (previous >> 8));
+					int db = (byte) (color - previous);
+
+					int drdg = dr - dg;
+					int dbdg = db - dg;
+					if(dr >= -2 && dr <= 1 && dg >= -2 && dg <= 1 && db >= -2 && db <= 1) {
+						buffer[size++] = (byte) (QoiDecoder.OP_DIFF | (dr + 2) << 4 | (dg + 2) << 2 | (db + 2));
+					} else if(dg >= -32 && dg <= 31 && drdg >= -8 && drdg <= 7 && dbdg >= -8 && dbdg <= 7) {
+						buffer[size++] = (byte) (QoiDecoder.OP_LUMA | (dg + 32));
+						buffer[size++] = (byte) ((drdg + 8) << 4 | (dbdg + 8));
+					} else {
+						buffer[size++] = (byte) QoiDecoder.OP_RGB;
+						buffer[size++] = (byte) (color >> 16);
+						buffer[size++] = (byte) (color >> 8);
+						buffer[size++] = (byte) color;
+					}
+				} else {
+					buffer[size++] = (byte) QoiDecoder.OP_RGBA;
+					buffer[size++] = (byte) (color >> 16);
+					buffer[size++] = (byte) (color >> 8);
+					buffer[size++] = (byte) color;
+					buffer[size++] = (byte) (color >>> 24);
+				}
+			}
+			previous = color;
+		}
+
+		this.size = size;
+		this.pixel = previous;
+		this.run = run;
+	}
+
+	protected void encodeEnd() throws IOException {
+		if(run > 0) buffer[size++] = (byte) (QoiDecoder.OP_RUN | run - 1);
+		out.write(buffer, 0, size);
+		size = 0;
+
+		// the end marker
+		out.write(new byte[] {0, 0, 0, 0, 0, 0, 0, 1});
+	}
+
+	private static void putInt(byte[] b, int i, int value) {
+		b[i] = (byte) (value >> 24);
+		b[i + 1] = (byte) (value >> 16);
+		b[i + 2] = (byte) (value >> 8);
+		b[i + 3] = (byte) value;
+	}
+
+}
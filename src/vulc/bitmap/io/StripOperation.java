@@ -0,0 +1,227 @@
+package vulc.bitmap.io;
+
+import vulc.bitmap.ArgbBitmap;
+import vulc.bitmap.Bitmap;
+import vulc.bitmap.BoolBitmap;
+import vulc.bitmap.raster.BitRaster;
+import vulc.bitmap.raster.IntBlender;
+import vulc.bitmap.raster.IntRaster;
+import vulc.bitmap.raster.Raster;
+
+/**
+ * StripOperation is a step of a StripPipeline: it receives the image in
+ * horizontal strips, from top to bottom, and produces the rows of its
+ * result.<br>
+ * The bitmap returned by apply can be reused by the next call, so it must
+ * be used before apply is called again.
+ *
+ * @author Vulcalien
+ */
+public abstract class StripOperation<I, O> {
+
+	/**
+	 * Called before the first strip, with the size of the image that will
+	 * be received.
+	 */
+	protected void init(int width, int height) {
+	}
+
+	public int getOutputWidth(int width, int height) {
+		return width;
+	}
+
+	public int getOutputHeight(int width, int height) {
+		return height;
+	}
+
+	/**
+	 * Returns the rows produced from the strip, whose first row is the row
+	 * y of the image, or null if it produces no rows.
+	 */
+	public abstract Bitmap<O> apply(Bitmap<I> strip, int y);
+
+	// reuses the previous result if it has the same size
+	static <T> Bitmap<T> result(Bitmap<T> previous, Bitmap<T> sameType, int width, int height) {
+		if(previous != null && previous.width == width && previous.height == height) return previous;
+		return sameType.getSameTypeInstance(width, height);
+	}
+
+	/**
+	 * Returns an operation that scales the image to the given size, taking
+	 * the nearest pixel.
+	 */
+	public static <T> StripOperation<T, T> scale(int width, int height) {
+		if(width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+
+		return new StripOperation<T, T>() {
+			private int[] xMap;
+			private int inHeight;
+			private Bitmap<T> result;
+
+			protected void init(int inWidth, int inHeight) {
+				this.inHeight = inHeight;
+				this.xMap = new int[width];
+				for(int x = 0; x < width; x++) {
+					xMap[x] = (int) ((long) x * inWidth / width);
+				}
+			}
+
+			public int getOutputWidth(int w, int h) {
+				return width;
+			}
+
+			public int getOutputHeight(int w, int h) {
+				return height;
+			}
+
+			public Bitmap<T> apply(Bitmap<T> strip, int y) {
+				// the rows whose source row is in the strip
+				int yStart = ceilDiv((long) y * height, inHeight);
+				int yEnd = ceilDiv((long) (y + strip.height) * height, inHeight);
+				if(yStart >= yEnd) return null;
+
+				result = result(result, strip, width, yEnd - yStart);
+				for(int oy = yStart; oy < yEnd; oy++) {
+					int srcRow = ((int) ((long) oy * inHeight / height) - y) * strip.width;
+					int row = (oy - yStart) * width;
+
+					if(oy > yStart && (long) oy * inHeight / height == (long) (oy - 1) * inHeight / height) {
+						// same source row as the previous one
+						result.raster.copyPixels(row, result.raster, row - width, width);
+						continue;
+					}
+					for(int x = 0; x < width; x++) {
+						result.raster.copyPixel(row + x, strip.raster, srcRow + xMap[x]);
+					}
+				}
+				return result;
+			}
+		};
+	}
+
+	private static int getInt(Raster<Integer> raster, int i) {
+		if(raster instanceof IntRaster) return ((IntRaster) raster).getInt(i);
+		return raster.getPixel(i);
+	}
+
+	private static void setInt(Raster<Integer> raster, int i, int color) {
+		if(raster instanceof IntRaster) ((IntRaster) raster).setInt(i, color);
+		else raster.setPixel(i, color);
+	}
+
+	private static int ceilDiv(long a, long b) {
+		return (int) ((a + b - 1) / b);
+	}
+
+	/**
+	 * Returns an operation that flips each row. The image cannot be flipped
+	 * vertically: the last row would be needed first.
+	 */
+	public static <T> StripOperation<T, T> flipHorizontal() {
+		return new StripOperation<T, T>() {
+			private Bitmap<T> result;
+
+			public Bitmap<T> apply(Bitmap<T> strip, int y) {
+				int w = strip.width;
+
+				result = result(result, strip, w, strip.height);
+				for(int row = 0; row < strip.size(); row += w) {
+					for(int x = 0; x < w; x++) {
+						result.raster.copyPixel(row + x, strip.raster, row + w - 1 - x);
+					}
+				}
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * Returns an operation that turns the image into a BoolBitmap: pixels
+	 * whose luminance is at least level are true.
+	 */
+	public static StripOperation<Integer, Boolean> threshold(int level) {
+		return new StripOperation<Integer, Boolean>() {
+			private BoolBitmap result;
+
+			public Bitmap<Boolean> apply(Bitmap<Integer> strip, int y) {
+				if(result == null || result.width != strip.width || result.height != strip.height) {
+					result = new BoolBitmap(strip.width, strip.height);
+				}
+				BitRaster bits = (BitRaster) result.raster;
+				boolean premultiplied = strip instanceof ArgbBitmap;
+
+				for(int i = 0; i < strip.size(); i++) {
+					int color = getInt(strip.raster, i);
+					if(premultiplied) color = IntBlender.unpremultiply(color);
+
+					bits.setBool(i, Images.luminance(color) >= level);
+				}
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * Returns an operation that replaces each color with the nearest color
+	 * of the palette. The alpha of the pixels is kept.
+	 */
+	public static StripOperation<Integer, Integer> palette(int... palette) {
+		if(palette.length == 0) throw new IllegalArgumentException("The palette is empty");
+		int[] colors = palette.clone();
+
+		return new StripOperation<Integer, Integer>() {
+			// the last colors that were mapped, by hash
+			// the color 0 has hash 0, so the empty key there is -1 instead of 0
+			private final int[] cacheKeys = new int[4096];
+			private final int[] cacheValues = new int[4096];
+			{
+				cacheKeys[0] = -1;
+			}
+
+			private Bitmap<Integer> result;
+
+			public Bitmap<Integer> apply(Bitmap<Integer> strip, int y) {
+				boolean premultiplied = strip instanceof ArgbBitmap;
+
+				result = result(result, strip, strip.width, strip.height);
+				for(int i = 0; i < strip.size(); i++) {
+					int color = getInt(strip.raster, i);
+					if(premultiplied) color = IntBlender.unpremultiply(color);
+
+					int mapped = (color & 0xff000000) | nearest(color & 0xffffff);
+					if(premultiplied) mapped = IntBlender.premultiply(mapped);
+
+					setInt(result.raster, i, mapped);
+				}
+				return result;
+			}
+
+			private int nearest(int rgb) {
+				int hash = (rgb * 0x9e3779b1) >>> 20;
+				if(cacheKeys[hash] == rgb) return cacheValues[hash];
+
+				int r = rgb >> 16 & 0xff;
+				int g = rgb >> 8 & 0xff;
+				int b = rgb & 0xff;
+
+				int best = 0;
+				int bestDistance = Integer.MAX_VALUE;
+				for(int i = 0; i < colors.length; i++) {
+					int dr = (colors[i] >> 16 & 0xff) - r;
+					int dg = (colors[i] >> 8 & 0xff) - g;
+					int db = (colors[i] & 0xff) - b;
+
+					int distance = dr * dr + dg * dg + db * db;
+					if(distance < bestDistance) {
+						best = colors[i] & 0xffffff;
+						bestDistance = distance;
+					}
+				}
+				cacheKeys[hash] = rgb;
+				cacheValues[hash] = best;
+				return best;
+			}
+		};
+	}
+
+}
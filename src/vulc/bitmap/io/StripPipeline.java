@@ -0,0 +1,180 @@
+package vulc.bitmap.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import vulc.bitmap.ArgbBitmap;
+import vulc.bitmap.Bitmap;
+import vulc.bitmap.BoolBitmap;
+import vulc.bitmap.ByteBitmap;
+import vulc.bitmap.IntBitmap;
+import vulc.bitmap.raster.IntRaster;
+
+/**
+ * StripPipeline processes an image that may not fit in memory: it decodes
+ * a strip of rows at a time, passes it through a chain of operations and
+ * gives the result to a consumer, usually an encoder. The memory used
+ * depends on the width of the image and the height of the strips, not on
+ * the height of the image.<br>
+ * The decoded strips are IntBitmaps, or ArgbBitmaps if the image has
+ * alpha. Each call of then returns a new pipeline, whose strips have the
+ * type produced by the operation.<br>
+ * Example:
+ * <pre>
+ * StripPipeline.of(decoder, 64)
+ *              .then(StripOperation.scale(w / 2, h / 2))
+ *              .then(StripOperation.threshold(128))
+ *              .write(encoder);
+ * </pre>
+ *
+ * @author Vulcalien
+ */
+public class StripPipeline<T> {
+
+	private final ImageDecoder decoder;
+	private final int stripHeight;
+
+	private final List<StripOperation<?, ?>> operations;
+	private final int width, height;
+
+	private StripPipeline(ImageDecoder decoder, int stripHeight,
+	                      List<StripOperation<?, ?>> operations, int width, int height) {
+		this.decoder = decoder;
+		this.stripHeight = stripHeight;
+		this.operations = operations;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Creates a pipeline that decodes stripHeight rows at a time. The rows of
+	 * the decoder must be read from top to bottom.<br>
+	 * Most BMP images are stored bottom-up, so a decoder that reads them
+	 * from an InputStream is rejected: open them from a SeekableByteChannel
+	 * instead, for example with ImageDecoder.open(Files.newByteChannel(path)).
+	 */
+	public static StripPipeline<Integer> of(ImageDecoder decoder, int stripHeight) {
+		if(stripHeight <= 0) throw new IllegalArgumentException("stripHeight must be positive");
+		if(decoder.isBottomUp()) {
+			throw new IllegalArgumentException("The rows of the image are stored bottom-up: "
+			                                   + "open it with ImageDecoder.open(SeekableByteChannel)");
+		}
+		return new StripPipeline<Integer>(decoder, stripHeight, Collections.emptyList(),
+		                                  decoder.getWidth(), decoder.getHeight());
+	}
+
+	public <O> StripPipeline<O> then(StripOperation<T, O> operation) {
+		List<StripOperation<?, ?>> operations = new ArrayList<StripOperation<?, ?>>(this.operations);
+		operations.add(operation);
+
+		return new StripPipeline<O>(decoder, stripHeight, operations,
+		                            operation.getOutputWidth(width, height),
+		                            operation.getOutputHeight(width, height));
+	}
+
+	/**
+	 * Returns the width of the strips produced by the pipeline.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of the image produced by the pipeline.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Decodes the image and passes the strips produced by the last
+	 * operation to the consumer, from top to bottom. The strips can be
+	 * reused, so they must not be kept.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public void run(StripConsumer<T> consumer) throws IOException {
+		int nOps = operations.size();
+
+		// the y of the next row produced by each operation
+		int[] outputRows = new int[nOps];
+
+		int w = decoder.getWidth();
+		int h = decoder.getHeight();
+		for(StripOperation<?, ?> operation : operations) {
+			operation.init(w, h);
+
+			int nextWidth = operation.getOutputWidth(w, h);
+			int nextHeight = operation.getOutputHeight(w, h);
+			w = nextWidth;
+			h = nextHeight;
+		}
+
+		boolean premultiply = decoder.hasAlpha();
+		IntBitmap source = null;
+		int y = 0;
+		while(decoder.hasMoreRows()) {
+			int rows = Math.min(stripHeight, decoder.getHeight() - y);
+			if(source == null || source.height != rows) {
+				source = premultiply ? new ArgbBitmap(decoder.getWidth(), rows)
+				                     : new IntBitmap(decoder.getWidth(), rows);
+			}
+
+			// decode the rows straight into the strip
+			int[] pixels = ((IntRaster) source.raster).getArray();
+			for(int i = 0; i < rows; i++) {
+				decoder.readRow(pixels, i * source.width);
+			}
+			Images.convertRow(pixels, 0, pixels.length, premultiply);
+
+			Bitmap strip = source;
+			int stripY = y;
+			for(int i = 0; i < nOps && strip != null; i++) {
+				strip = ((StripOperation) operations.get(i)).apply(strip, stripY);
+				if(strip != null) {
+					stripY = outputRows[i];
+					outputRows[i] += strip.height;
+				}
+			}
+			if(strip != null) consumer.accept(strip, stripY);
+
+			y += rows;
+		}
+	}
+
+	/**
+	 * Runs the pipeline and writes the strips with the encoder, whose size
+	 * must be the one of the pipeline. IntBitmaps are written as RGB,
+	 * ArgbBitmaps as ARGB, ByteBitmaps as gray and BoolBitmaps as white and
+	 * black.
+	 */
+	@SuppressWarnings("unchecked")
+	public void write(ImageEncoder encoder) throws IOException {
+		if(encoder.getWidth() != width || encoder.getHeight() != height) {
+			throw new IllegalArgumentException("The encoder is " + encoder.getWidth() + "x" + encoder.getHeight()
+			                                   + ", the pipeline produces " + width + "x" + height);
+		}
+		run((strip, y) -> {
+			if(strip instanceof IntBitmap) {
+				Images.write(((Bitmap<Integer>) strip).raster, strip instanceof ArgbBitmap, encoder);
+			} else if(strip instanceof ByteBitmap) {
+				Images.writeGray(((Bitmap<Byte>) strip).raster, encoder);
+			} else if(strip instanceof BoolBitmap) {
+				Images.writeBool(((Bitmap<Boolean>) strip).raster, encoder);
+			} else {
+				throw new IllegalArgumentException("Cannot write a " + strip.getClass().getSimpleName());
+			}
+		});
+		encoder.finish();
+	}
+
+	/**
+	 * StripConsumer receives the strips produced by a pipeline, and the y of
+	 * their first row.
+	 */
+	public interface StripConsumer<T> {
+		void accept(Bitmap<T> strip, int y) throws IOException;
+	}
+
+}
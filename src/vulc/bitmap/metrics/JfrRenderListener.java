@@ -0,0 +1,154 @@
+package vulc.bitmap.metrics;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import vulc.bitmap.Bitmap;
+
+/**
+ * JfrRenderListener is a RenderListener that records each operation as a
+ * JDK Flight Recorder event, named "vulc.bitmap.RenderOperation". The
+ * events are only created while a recording that enables them is
+ * running.<br>
+ * The library is compiled for Java 8, which has no Flight Recorder API, so
+ * the event type is defined at runtime with jdk.jfr.EventFactory: it needs
+ * Java 12 or later.<br>
+ * The time of the events is the time the operation ended. Its duration is
+ * in the nanos field.<br>
+ * The methods of the Flight Recorder API are resolved once, as method
+ * handles. While no recording enables the event, operationDone only checks
+ * the event type and allocates nothing.
+ *
+ * @author Vulcalien
+ */
+public class JfrRenderListener implements RenderListener {
+
+	public static final String EVENT_NAME = "vulc.bitmap.RenderOperation";
+
+	// the fields of the event, in order
+	private static final int OPERATION = 0;
+	private static final int BITMAP = 1;
+	private static final int COUNT = 2;
+	private static final int PIXELS = 3;
+	private static final int TRANSPARENCY = 4;
+	private static final int NANOS = 5;
+
+	// bound to the event type and to the factory: ()boolean and ()Object
+	private final MethodHandle isEnabled;
+	private final MethodHandle newEvent;
+
+	// (Object event, int index, Object value)void and (Object event)void
+	private final MethodHandle set;
+	private final MethodHandle commit;
+
+	/**
+	 * Defines the event type.
+	 *
+	 * @throws UnsupportedOperationException if the Flight Recorder API is
+	 *         not available
+	 */
+	public JfrRenderListener() {
+		try {
+			Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+			Class<?> eventClass = Class.forName("jdk.jfr.Event");
+
+			List<Object> annotations = Arrays.asList(
+				annotation("jdk.jfr.Name", EVENT_NAME),
+				annotation("jdk.jfr.Label", "Render Operation"),
+				annotation("jdk.jfr.Description", "An operation of Bitmap, Font or Geometry"),
+				annotation("jdk.jfr.Category", new String[] {"Bitmap-Utility"}),
+				annotation("jdk.jfr.StackTrace", false)
+			);
+
+			List<Object> fields = new ArrayList<Object>();
+			fields.add(field(String.class, "operation", "Operation"));
+			fields.add(field(String.class, "bitmap", "Bitmap Class"));
+			fields.add(field(int.class, "count", "Count"));
+			fields.add(field(long.class, "pixels", "Pixels"));
+			fields.add(field(int.class, "transparency", "Transparency"));
+			fields.add(field(long.class, "nanos", "Duration",
+			                 annotation("jdk.jfr.Timespan", "NANOSECONDS")));
+
+			Object factory = factoryClass.getMethod("create", List.class, List.class)
+			                             .invoke(null, annotations, fields);
+			Object eventType = factoryClass.getMethod("getEventType").invoke(factory);
+
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			this.isEnabled = lookup.unreflect(Class.forName("jdk.jfr.EventType").getMethod("isEnabled"))
+			                       .bindTo(eventType)
+			                       .asType(MethodType.methodType(boolean.class));
+			this.newEvent = lookup.unreflect(factoryClass.getMethod("newEvent"))
+			                      .bindTo(factory)
+			                      .asType(MethodType.methodType(Object.class));
+			this.set = lookup.unreflect(eventClass.getMethod("set", int.class, Object.class))
+			                 .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+			this.commit = lookup.unreflect(eventClass.getMethod("commit"))
+			                    .asType(MethodType.methodType(void.class, Object.class));
+		} catch(ClassNotFoundException | NoSuchMethodException e) {
+			throw new UnsupportedOperationException("The Flight Recorder API needs Java 12 or later", e);
+		} catch(ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Cannot define the Flight Recorder event", e);
+		}
+	}
+
+	/**
+	 * Returns true if the Flight Recorder events can be defined.
+	 */
+	public static boolean isSupported() {
+		try {
+			Class.forName("jdk.jfr.EventFactory");
+			return true;
+		} catch(ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	// creates a jdk.jfr.AnnotationElement
+	@SuppressWarnings("unchecked")
+	private static Object annotation(String type, Object value) throws ReflectiveOperationException {
+		Class<? extends Annotation> annotationType = (Class<? extends Annotation>) Class.forName(type);
+		Constructor<?> constructor = Class.forName("jdk.jfr.AnnotationElement")
+		                                  .getConstructor(Class.class, Object.class);
+		return constructor.newInstance(annotationType, value);
+	}
+
+	// creates a jdk.jfr.ValueDescriptor
+	private static Object field(Class<?> type, String name, String label, Object... annotations)
+			throws ReflectiveOperationException {
+		List<Object> list = new ArrayList<Object>();
+		list.add(annotation("jdk.jfr.Label", label));
+		Collections.addAll(list, annotations);
+
+		Constructor<?> constructor = Class.forName("jdk.jfr.ValueDescriptor")
+		                                  .getConstructor(Class.class, String.class, List.class);
+		return constructor.newInstance(type, name, list);
+	}
+
+	public void operationDone(Bitmap<?> bitmap, int operation, int count, long pixels, int transparency, long nanos) {
+		try {
+			// no recording enables the event
+			if(!(boolean) isEnabled.invokeExact()) return;
+
+			Object event = (Object) newEvent.invokeExact();
+			set.invokeExact(event, OPERATION, (Object) RenderMetrics.nameOf(operation));
+			set.invokeExact(event, BITMAP, (Object) bitmap.getClass().getName());
+			set.invokeExact(event, COUNT, (Object) count);
+			set.invokeExact(event, PIXELS, (Object) pixels);
+			set.invokeExact(event, TRANSPARENCY, (Object) transparency);
+			set.invokeExact(event, NANOS, (Object) nanos);
+			commit.invokeExact(event);
+		} catch(RuntimeException | Error e) {
+			throw e;
+		} catch(Throwable e) {
+			throw new IllegalStateException("Cannot commit the Flight Recorder event", e);
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+package vulc.bitmap.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import vulc.bitmap.ArgbBitmap;
+import vulc.bitmap.Bitmap;
+
+/**
+ * RenderCounters is a RenderListener that adds up, for each operation,
+ * how many times it was made, the pixels it covered and the time it took.
+ * It can be used from more than one thread.<br>
+ * Pixels drawn with a transparency, or drawn into an ArgbBitmap, are also
+ * counted as blended.<br>
+ * Example, to measure a frame:
+ * <pre>
+ * RenderCounters counters = new RenderCounters();
+ * RenderMetrics.addListener(counters);
+ * render();
+ * System.out.println(counters);
+ * counters.reset();
+ * </pre>
+ *
+ * @author Vulcalien
+ */
+public class RenderCounters implements RenderListener {
+
+	private final LongAdder[] calls = newAdders();
+	private final LongAdder[] counts = newAdders();
+	private final LongAdder[] pixels = newAdders();
+	private final LongAdder[] blendedPixels = newAdders();
+	private final LongAdder[] nanos = newAdders();
+
+	private static LongAdder[] newAdders() {
+		LongAdder[] adders = new LongAdder[RenderMetrics.OPERATIONS];
+		for(int i = 0; i < adders.length; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	public void operationDone(Bitmap<?> bitmap, int operation, int count, long pixels, int transparency, long nanos) {
+		this.calls[operation].increment();
+		this.counts[operation].add(count);
+		this.pixels[operation].add(pixels);
+		this.nanos[operation].add(nanos);
+
+		if(transparency != 0xff || (bitmap instanceof ArgbBitmap && isDrawing(operation))) {
+			this.blendedPixels[operation].add(pixels);
+		}
+	}
+
+	private static boolean isDrawing(int operation) {
+		return operation != RenderMetrics.CLEAR
+		       && operation != RenderMetrics.SCALE
+		       && operation != RenderMetrics.ALLOCATE;
+	}
+
+	/**
+	 * Returns how many times the operation was made.
+	 */
+	public long getCalls(int operation) {
+		return calls[operation].sum();
+	}
+
+	/**
+	 * Returns the sum of the counts of the operation: for WRITE, the
+	 * number of characters written.
+	 */
+	public long getCount(int operation) {
+		return counts[operation].sum();
+	}
+
+	public long getPixels(int operation) {
+		return pixels[operation].sum();
+	}
+
+	public long getBlendedPixels(int operation) {
+		return blendedPixels[operation].sum();
+	}
+
+	public long getNanos(int operation) {
+		return nanos[operation].sum();
+	}
+
+	public long getTotalPixels() {
+		long total = 0;
+		for(int i = 0; i < RenderMetrics.OPERATIONS; i++) {
+			total += pixels[i].sum();
+		}
+		return total;
+	}
+
+	public long getTotalNanos() {
+		long total = 0;
+		for(int i = 0; i < RenderMetrics.OPERATIONS; i++) {
+			total += nanos[i].sum();
+		}
+		return total;
+	}
+
+	/**
+	 * Sets all the counters to 0. Operations done while resetting may be
+	 * partly counted.
+	 */
+	public void reset() {
+		for(int i = 0; i < RenderMetrics.OPERATIONS; i++) {
+			calls[i].reset();
+			counts[i].reset();
+			pixels[i].reset();
+			blendedPixels[i].reset();
+			nanos[i].reset();
+		}
+	}
+
+	/**
+	 * Returns a table with the operations that were made.
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-12s %10s %10s %14s %14s %12s%n",
+		                        "operation", "calls", "count", "pixels", "blended", "micros"));
+		for(int i = 0; i < RenderMetrics.OPERATIONS; i++) {
+			long calls = getCalls(i);
+			if(calls == 0) continue;
+
+			sb.append(String.format("%-12s %10d %10d %14d %14d %12d%n",
+			                        RenderMetrics.nameOf(i), calls, getCount(i),
+			                        getPixels(i), getBlendedPixels(i), getNanos(i) / 1000));
+		}
+		return sb.toString();
+	}
+
+}
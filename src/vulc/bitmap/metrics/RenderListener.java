@@ -0,0 +1,23 @@
+package vulc.bitmap.metrics;
+
+import vulc.bitmap.Bitmap;
+
+/**
+ * RenderListener receives the operations reported by RenderMetrics. It
+ * is called in the thread that made the operation, so it must be fast
+ * and, if bitmaps are drawn in more than one thread, thread-safe.
+ *
+ * @author Vulcalien
+ */
+public interface RenderListener {
+
+	/**
+	 * Called when an operation is done.<br>
+	 * operation is one of the constants of RenderMetrics. count is 1, or
+	 * the number of characters for WRITE. pixels is the area covered by
+	 * the operation, clipped to the bitmap. transparency is 0xff for opaque
+	 * operations and nanos is the time the operation took.
+	 */
+	void operationDone(Bitmap<?> bitmap, int operation, int count, long pixels, int transparency, long nanos);
+
+}
@@ -0,0 +1,170 @@
+package vulc.bitmap.metrics;
+
+import java.util.Arrays;
+
+import vulc.bitmap.Bitmap;
+
+/**
+ * RenderMetrics reports the operations of Bitmap, Font and Geometry to a
+ * listener: which operation, on which bitmap, how many pixels it covered
+ * and how long it took.<br>
+ * No listener is set by default. Without listeners, an operation only
+ * reads a field and checks that it is null, so the metrics can be left in
+ * production code.<br>
+ * The operations made by Font.write, TextLayout.draw and Geometry, like
+ * the fills of a filled circle, are included in the operation that made
+ * them and not reported separately. The bitmaps allocated by
+ * getSameTypeInstance are reported as ALLOCATE. Operations that are
+ * completely outside the bitmap may not be reported.<br>
+ * <br>
+ * The operations call start before they begin and report when they are
+ * done. Operations made of other operations call enter and exit instead,
+ * exit in a finally block.
+ *
+ * @author Vulcalien
+ */
+public final class RenderMetrics {
+
+	// Bitmap
+	public static final int CLEAR = 0;
+	public static final int FILL = 1;
+	public static final int DRAW = 2;
+	public static final int DRAW_SPRITE = 3;
+	public static final int DRAW_MASK = 4;
+	public static final int TRANSFORM = 5;
+	public static final int SCALE = 6;
+	public static final int ALLOCATE = 7;
+
+	// Font
+	public static final int WRITE = 8;
+
+	// Geometry
+	public static final int LINE = 9;
+	public static final int CIRCLE = 10;
+	public static final int ELLIPSE = 11;
+	public static final int POLYGON = 12;
+
+	public static final int OPERATIONS = 13;
+
+	private static final String[] NAMES = {
+		"clear", "fill", "draw", "drawSprite", "drawMask", "transform", "scale", "allocate",
+		"write",
+		"line", "circle", "ellipse", "polygon"
+	};
+
+	/**
+	 * Returned by start and enter when there are no listeners.
+	 */
+	public static final long DISABLED = Long.MIN_VALUE;
+
+	private static RenderListener[] listeners = new RenderListener[0];
+
+	// null if there are no listeners, the only listener or a listener that calls all of them
+	private static volatile RenderListener listener;
+
+	// how many operations made of other operations are running in each thread
+	private static final ThreadLocal<int[]> depth = new ThreadLocal<int[]>() {
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	private RenderMetrics() {
+	}
+
+	public static String nameOf(int operation) {
+		return NAMES[operation];
+	}
+
+	public static synchronized void addListener(RenderListener l) {
+		if(l == null) throw new NullPointerException();
+
+		listeners = Arrays.copyOf(listeners, listeners.length + 1);
+		listeners[listeners.length - 1] = l;
+		updateListener();
+	}
+
+	public static synchronized void removeListener(RenderListener l) {
+		for(int i = 0; i < listeners.length; i++) {
+			if(listeners[i] == l) {
+				RenderListener[] result = new RenderListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, result, 0, i);
+				System.arraycopy(listeners, i + 1, result, i, result.length - i);
+				listeners = result;
+				updateListener();
+				return;
+			}
+		}
+	}
+
+	private static void updateListener() {
+		if(listeners.length == 0) {
+			listener = null;
+		} else if(listeners.length == 1) {
+			listener = listeners[0];
+		} else {
+			RenderListener[] all = listeners;
+			listener = (bitmap, operation, count, pixels, transparency, nanos) -> {
+				for(int i = 0; i < all.length; i++) {
+					all[i].operationDone(bitmap, operation, count, pixels, transparency, nanos);
+				}
+			};
+		}
+	}
+
+	public static boolean isEnabled() {
+		return listener != null;
+	}
+
+	/**
+	 * Returns the time the operation starts, or DISABLED if there are no
+	 * listeners.
+	 */
+	public static long start() {
+		if(listener == null) return DISABLED;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Reports an operation that began when start returned the given time.
+	 * count is 1, or the number of characters for WRITE. pixels is the area
+	 * covered by the operation, clipped to the bitmap.
+	 */
+	public static void report(long start, Bitmap<?> bitmap, int operation, int count, long pixels, int transparency) {
+		if(start == DISABLED) return;
+		if(depth.get()[0] != 0) return;
+
+		long nanos = System.nanoTime() - start;
+		RenderListener l = listener;
+		if(l != null) l.operationDone(bitmap, operation, count, pixels, transparency & 0xff, nanos);
+	}
+
+	/**
+	 * Like start, for operations made of other operations: until exit is
+	 * called, the operations of this thread are not reported.
+	 */
+	public static long enter() {
+		if(listener == null) return DISABLED;
+
+		depth.get()[0]++;
+		return System.nanoTime();
+	}
+
+	public static void exit(long start, Bitmap<?> bitmap, int operation, int count, long pixels, int transparency) {
+		if(start == DISABLED) return;
+		depth.get()[0]--;
+
+		report(start, bitmap, operation, count, pixels, transparency);
+	}
+
+	/**
+	 * Returns the area of the rectangle that is inside the bitmap.
+	 */
+	public static long area(Bitmap<?> bitmap, int x, int y, int width, int height) {
+		long w = Math.min((long) x + width, bitmap.width) - Math.max(x, 0);
+		long h = Math.min((long) y + height, bitmap.height) - Math.max(y, 0);
+		if(w <= 0 || h <= 0) return 0;
+		return w * h;
+	}
+
+}
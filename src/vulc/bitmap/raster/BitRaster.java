@@ -0,0 +1,180 @@
+package vulc.bitmap.raster;
+
+import java.util.Arrays;
+
+/**
+ * BitRaster stores a boolean pixel per bit, 64 pixels in each long.<br>
+ * Pixel i is the bit (i % 64) of the word (i / 64).
+ *
+ * @author Vulcalien
+ */
+public class BitRaster extends Raster<Boolean> {
+
+	private final long[] words;
+
+	public BitRaster(int width, int height, long[] words) {
+		super(width, height);
+		this.words = words;
+
+		if(wordsFor(width * height) != words.length) throw new IllegalArgumentException("Raster size != (width * height + 63) / 64");
+	}
+
+	public BitRaster(int width, int height) {
+		this(width, height, new long[wordsFor(width * height)]);
+	}
+
+	public static int wordsFor(int pixels) {
+		return (pixels + 63) >>> 6;
+	}
+
+	public void setPixel(int i, Boolean color) {
+		setBool(i, color);
+	}
+
+	public Boolean getPixel(int i) {
+		return getBool(i);
+	}
+
+	public void setBool(int i, boolean color) {
+		if(color) {
+			words[i >>> 6] |= 1L << i;
+		} else {
+			words[i >>> 6] &= ~(1L << i);
+		}
+	}
+
+	public boolean getBool(int i) {
+		return (words[i >>> 6] & (1L << i)) != 0;
+	}
+
+	public void copyPixel(int i, Raster<Boolean> src, int srcIndex) {
+		if(src instanceof BitRaster) {
+			setBool(i, ((BitRaster) src).getBool(srcIndex));
+		} else {
+			super.copyPixel(i, src, srcIndex);
+		}
+	}
+
+	public void fill(int from, int to, Boolean color) {
+		if(from >= to) return;
+
+		int w0 = from >>> 6;
+		int w1 = (to - 1) >>> 6;
+
+		long firstMask = -1L << from;
+		long lastMask = -1L >>> -to;
+
+		if(w0 == w1) {
+			setBits(w0, firstMask & lastMask, color);
+		} else {
+			setBits(w0, firstMask, color);
+			Arrays.fill(words, w0 + 1, w1, color ? -1L : 0L);
+			setBits(w1, lastMask, color);
+		}
+	}
+
+	private void setBits(int word, long mask, boolean color) {
+		if(color) {
+			words[word] |= mask;
+		} else {
+			words[word] &= ~mask;
+		}
+	}
+
+	public void copyPixels(int i, Raster<Boolean> src, int srcIndex, int length) {
+		if(!(src instanceof BitRaster)) {
+			super.copyPixels(i, src, srcIndex, length);
+			return;
+		}
+		BitRaster bits = (BitRaster) src;
+
+		// if the ranges overlap, copy backwards
+		if(bits == this && i > srcIndex && i < srcIndex + length) {
+			int n = length;
+			while(n > 0) {
+				int step = Math.min(n, 64);
+				n -= step;
+				writeBits(i + n, step, bits.readBits(srcIndex + n, step));
+			}
+		} else {
+			for(int n = 0; n < length; n += 64) {
+				int step = Math.min(length - n, 64);
+				writeBits(i + n, step, bits.readBits(srcIndex + n, step));
+			}
+		}
+	}
+
+	/**
+	 * Returns n bits (1 to 64), starting from the pixel i. The first pixel
+	 * is the least significant bit.
+	 */
+	public long readBits(int i, int n) {
+		int word = i >>> 6;
+		int offset = i & 63;
+
+		long result = words[word] >>> offset;
+		if(offset + n > 64) {
+			result |= words[word + 1] << -offset;
+		}
+		return n == 64 ? result : result & ((1L << n) - 1);
+	}
+
+	/**
+	 * Writes n bits (1 to 64), starting from the pixel i. The first pixel
+	 * is the least significant bit.
+	 */
+	public void writeBits(int i, int n, long bits) {
+		int word = i >>> 6;
+		int offset = i & 63;
+
+		long mask = n == 64 ? -1L : (1L << n) - 1;
+		bits &= mask;
+
+		words[word] = (words[word] & ~(mask << offset)) | (bits << offset);
+		if(offset + n > 64) {
+			long highMask = mask >>> -offset;
+			words[word + 1] = (words[word + 1] & ~highMask) | (bits >>> -offset);
+		}
+	}
+
+	/**
+	 * Returns the index of the first true pixel in [from, to), or to if
+	 * there is none. Words containing no true pixels are skipped.
+	 */
+	public int nextSetBit(int from, int to) {
+		if(from >= to) return to;
+
+		int word = from >>> 6;
+		long bits = words[word] & (-1L << from);
+		while(true) {
+			if(bits != 0) {
+				int result = (word << 6) + Long.numberOfTrailingZeros(bits);
+				return Math.min(result, to);
+			}
+			word++;
+			if(word << 6 >= to) return to;
+			bits = words[word];
+		}
+	}
+
+	/**
+	 * Returns the index of the first false pixel in [from, to), or to if
+	 * there is none. Words containing only true pixels are skipped.
+	 */
+	public int nextClearBit(int from, int to) {
+		if(from >= to) return to;
+
+		int word = from >>> 6;
+		long bits = ~words[word] & (-1L << from);
+		while(true) {
+			if(bits != 0) {
+				int result = (word << 6) + Long.numberOfTrailingZeros(bits);
+				return Math.min(result, to);
+			}
+			word++;
+			if(word << 6 >= to) return to;
+			bits = ~words[word];
+		}
+	}
+
+}
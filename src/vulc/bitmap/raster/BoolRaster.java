@@ -1,5 +1,7 @@
 package vulc.bitmap.raster;
 
+import java.util.Arrays;
+
 public class BoolRaster extends Raster<Boolean> {
 
 	private final boolean[] pixels;
@@ -15,6 +17,10 @@ public class BoolRaster extends Raster<Boolean> {
 		this(width, height, new boolean[width * height]);
 	}
 
+	public boolean canWriteRowsInParallel() {
+		return true;
+	}
+
 	public void setPixel(int i, Boolean color) {
 		pixels[i] = color;
 	}
@@ -23,4 +29,32 @@ public class BoolRaster extends Raster<Boolean> {
 		return pixels[i];
 	}
 
+	public void setBool(int i, boolean color) {
+		pixels[i] = color;
+	}
+
+	public boolean getBool(int i) {
+		return pixels[i];
+	}
+
+	public void copyPixel(int i, Raster<Boolean> src, int srcIndex) {
+		if(src instanceof BoolRaster) {
+			pixels[i] = ((BoolRaster) src).pixels[srcIndex];
+		} else {
+			super.copyPixel(i, src, srcIndex);
+		}
+	}
+
+	public void fill(int from, int to, Boolean color) {
+		Arrays.fill(pixels, from, to, color);
+	}
+
+	public void copyPixels(int i, Raster<Boolean> src, int srcIndex, int length) {
+		if(src instanceof BoolRaster) {
+			System.arraycopy(((BoolRaster) src).pixels, srcIndex, pixels, i, length);
+		} else {
+			super.copyPixels(i, src, srcIndex, length);
+		}
+	}
+
 }
@@ -0,0 +1,183 @@
+package vulc.bitmap.raster;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * ByteBufferRaster stores the pixels in ByteBuffers instead of a Java array,
+ * so they can be off-heap or mapped from a file.<br>
+ * The pixels are split into segments of 2^30 pixels, because a single
+ * buffer cannot be larger than 2GB.
+ *
+ * @author Vulcalien
+ */
+public class ByteBufferRaster extends Raster<Byte> {
+
+	public static final int SEGMENT_SHIFT = 30;
+	public static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+	private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	private final ByteBuffer[] segments;
+
+	public ByteBufferRaster(int width, int height, ByteBuffer... segments) {
+		super(width, height);
+		this.segments = segments;
+
+		int size = width * height;
+		if(segments.length != segmentsFor(size)) throw new IllegalArgumentException("Wrong number of segments");
+		for(int s = 0; s < segments.length; s++) {
+			if(segments[s].limit() != segmentLength(size, s)) throw new IllegalArgumentException("Wrong segment size");
+		}
+	}
+
+	public static ByteBufferRaster allocateDirect(int width, int height) {
+		int size = width * height;
+
+		ByteBuffer[] segments = new ByteBuffer[segmentsFor(size)];
+		for(int s = 0; s < segments.length; s++) {
+			segments[s] = ByteBuffer.allocateDirect(segmentLength(size, s));
+		}
+		return new ByteBufferRaster(width, height, segments);
+	}
+
+	public static ByteBufferRaster map(FileChannel channel, MapMode mode, long position,
+	                                   int width, int height) throws IOException {
+		int size = width * height;
+
+		ByteBuffer[] segments = new ByteBuffer[segmentsFor(size)];
+		for(int s = 0; s < segments.length; s++) {
+			long offset = position + (long) s * SEGMENT_SIZE;
+			segments[s] = channel.map(mode, offset, segmentLength(size, s));
+		}
+		return new ByteBufferRaster(width, height, segments);
+	}
+
+	/**
+	 * Maps the file for reading and writing. If the file is too small, it
+	 * is extended.
+	 */
+	public static ByteBufferRaster map(File file, int width, int height) throws IOException {
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			long length = (long) width * height;
+			if(raf.length() < length) raf.setLength(length);
+
+			// the mapping remains valid after the channel is closed
+			return map(raf.getChannel(), MapMode.READ_WRITE, 0, width, height);
+		}
+	}
+
+	private static int segmentsFor(int size) {
+		return (int) (((long) size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+	}
+
+	private static int segmentLength(int size, int segment) {
+		return Math.min(size - (segment << SEGMENT_SHIFT), SEGMENT_SIZE);
+	}
+
+	public boolean canWriteRowsInParallel() {
+		return true;
+	}
+
+	public void setPixel(int i, Byte color) {
+		setByte(i, color);
+	}
+
+	public Byte getPixel(int i) {
+		return getByte(i);
+	}
+
+	public void setByte(int i, byte color) {
+		segments[i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, color);
+	}
+
+	public byte getByte(int i) {
+		return segments[i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);
+	}
+
+	public void getBytes(int i, byte[] dst, int offset, int length) {
+		while(length > 0) {
+			ByteBuffer segment = segments[i >>> SEGMENT_SHIFT].duplicate();
+			int pos = i & SEGMENT_MASK;
+			int n = Math.min(length, segment.limit() - pos);
+
+			segment.position(pos);
+			segment.get(dst, offset, n);
+
+			i += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	public void setBytes(int i, byte[] src, int offset, int length) {
+		while(length > 0) {
+			ByteBuffer segment = segments[i >>> SEGMENT_SHIFT].duplicate();
+			int pos = i & SEGMENT_MASK;
+			int n = Math.min(length, segment.limit() - pos);
+
+			segment.position(pos);
+			segment.put(src, offset, n);
+
+			i += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	public void copyPixel(int i, Raster<Byte> src, int srcIndex) {
+		if(src instanceof ByteBufferRaster) {
+			setByte(i, ((ByteBufferRaster) src).getByte(srcIndex));
+		} else {
+			super.copyPixel(i, src, srcIndex);
+		}
+	}
+
+	public void fill(int from, int to, Byte color) {
+		byte c = color;
+		while(from < to) {
+			ByteBuffer segment = segments[from >>> SEGMENT_SHIFT];
+			int pos = from & SEGMENT_MASK;
+			int n = Math.min(to - from, segment.limit() - pos);
+
+			// set the first pixel, then keep copying the filled part after itself
+			segment.put(pos, c);
+			for(int filled = 1; filled < n; filled *= 2) {
+				int count = Math.min(filled, n - filled);
+
+				ByteBuffer src = segment.duplicate();
+				src.limit(pos + count).position(pos);
+
+				ByteBuffer dst = segment.duplicate();
+				dst.position(pos + filled);
+				dst.put(src);
+			}
+			from += n;
+		}
+	}
+
+	public void copyPixels(int i, Raster<Byte> src, int srcIndex, int length) {
+		if(src instanceof ByteRaster) {
+			setBytes(i, ((ByteRaster) src).pixels, srcIndex, length);
+		} else if(src instanceof ByteBufferRaster) {
+			ByteBufferRaster buffer = (ByteBufferRaster) src;
+
+			// if the ranges overlap, copy backwards
+			if(buffer == this && i > srcIndex) {
+				for(int j = length - 1; j >= 0; j--) {
+					setByte(i + j, getByte(srcIndex + j));
+				}
+			} else {
+				for(int j = 0; j < length; j++) {
+					setByte(i + j, buffer.getByte(srcIndex + j));
+				}
+			}
+		} else {
+			super.copyPixels(i, src, srcIndex, length);
+		}
+	}
+
+}
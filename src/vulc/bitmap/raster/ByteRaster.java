@@ -1,8 +1,10 @@
 package vulc.bitmap.raster;
 
+import java.util.Arrays;
+
 public class ByteRaster extends Raster<Byte> {
 
-	private final byte[] pixels;
+	final byte[] pixels;
 
 	public ByteRaster(int width, int height, byte[] pixels) {
 		super(width, height);
@@ -15,6 +17,18 @@ public class ByteRaster extends Raster<Byte> {
 		this(width, height, new byte[width * height]);
 	}
 
+	/**
+	 * Returns the array of the pixels, not a copy: changing it changes the
+	 * raster.
+	 */
+	public byte[] getArray() {
+		return pixels;
+	}
+
+	public boolean canWriteRowsInParallel() {
+		return true;
+	}
+
 	public void setPixel(int i, Byte color) {
 		pixels[i] = color;
 	}
@@ -23,4 +37,34 @@ public class ByteRaster extends Raster<Byte> {
 		return pixels[i];
 	}
 
+	public void setByte(int i, byte color) {
+		pixels[i] = color;
+	}
+
+	public byte getByte(int i) {
+		return pixels[i];
+	}
+
+	public void copyPixel(int i, Raster<Byte> src, int srcIndex) {
+		if(src instanceof ByteRaster) {
+			pixels[i] = ((ByteRaster) src).pixels[srcIndex];
+		} else {
+			super.copyPixel(i, src, srcIndex);
+		}
+	}
+
+	public void fill(int from, int to, Byte color) {
+		Arrays.fill(pixels, from, to, color);
+	}
+
+	public void copyPixels(int i, Raster<Byte> src, int srcIndex, int length) {
+		if(src instanceof ByteRaster) {
+			System.arraycopy(((ByteRaster) src).pixels, srcIndex, pixels, i, length);
+		} else if(src instanceof ByteBufferRaster) {
+			((ByteBufferRaster) src).getBytes(srcIndex, pixels, i, length);
+		} else {
+			super.copyPixels(i, src, srcIndex, length);
+		}
+	}
+
 }
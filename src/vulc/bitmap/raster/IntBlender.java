@@ -0,0 +1,204 @@
+package vulc.bitmap.raster;
+
+import java.util.Arrays;
+
+/**
+ * IntBlender blends RGB colors stored in ints.<br>
+ * Red and blue are blended together, in two 16-bit lanes of the same int,
+ * and the divisions by 255 are replaced by shifts that give exactly the
+ * same result. The alpha byte of the result is always 0.<br>
+ * The composite methods work on premultiplied ARGB colors instead: the
+ * source is drawn over the destination using its alpha.
+ *
+ * @author Vulcalien
+ */
+public final class IntBlender {
+
+	private IntBlender() {
+	}
+
+	// floor(v / 255) for each of the two 16-bit lanes of v (each <= 255 * 255)
+	private static int div255(int v) {
+		return ((v + 0x00010001 + ((v >> 8) & 0x00ff00ff)) >> 8) & 0x00ff00ff;
+	}
+
+	/**
+	 * Returns (newColor * transparency + oldColor * (255 - transparency)) / 255
+	 * for each channel.
+	 */
+	public static int blend(int newColor, int oldColor, int transparency) {
+		int inverse = 0xff - transparency;
+
+		int rb = (newColor & 0xff00ff) * transparency + (oldColor & 0xff00ff) * inverse;
+		int g = ((newColor >> 8) & 0xff) * transparency + ((oldColor >> 8) & 0xff) * inverse;
+
+		return div255(rb) | div255(g) << 8;
+	}
+
+	/**
+	 * Blends the color into length pixels, starting from offset.
+	 */
+	public static void blendSpan(int[] dst, int offset, int length, int color, int transparency) {
+		int inverse = 0xff - transparency;
+
+		// the color is the same for every pixel
+		int rb0 = (color & 0xff00ff) * transparency;
+		int g0 = ((color >> 8) & 0xff) * transparency;
+
+		int end = offset + length;
+		for(int i = offset; i < end; i++) {
+			int old = dst[i];
+
+			int rb = rb0 + (old & 0xff00ff) * inverse;
+			int g = g0 + ((old >> 8) & 0xff) * inverse;
+
+			dst[i] = div255(rb) | div255(g) << 8;
+		}
+	}
+
+	/**
+	 * Blends length pixels of src, starting from srcOffset, into dst,
+	 * starting from dstOffset.
+	 */
+	public static void blendSpan(int[] dst, int dstOffset, int[] src, int srcOffset, int length, int transparency) {
+		for(int i = 0; i < length; i++) {
+			dst[dstOffset + i] = blend(src[srcOffset + i], dst[dstOffset + i], transparency);
+		}
+	}
+
+	/**
+	 * Blends the color into length pixels of dst, starting from dstOffset.
+	 * The transparency of each pixel is mask * transparency / 255, where
+	 * mask is the unsigned value of the matching byte.
+	 */
+	public static void blendMask(int[] dst, int dstOffset, byte[] mask, int maskOffset, int length,
+	                             int color, int transparency) {
+		for(int i = 0; i < length; i++) {
+			int alpha = div255((mask[maskOffset + i] & 0xff) * transparency);
+			if(alpha == 0) {
+				// blending with 0 only clears the alpha byte
+				dst[dstOffset + i] &= 0xffffff;
+			} else {
+				dst[dstOffset + i] = blend(color, dst[dstOffset + i], alpha);
+			}
+		}
+	}
+
+	/**
+	 * Blends the color into a rectangle of pixels. The rectangle starts at
+	 * offset and its rows are stride pixels apart.
+	 */
+	public static void blendRect(int[] dst, int offset, int stride, int w, int h,
+	                             int color, int transparency) {
+		for(int y = 0; y < h; y++) {
+			blendSpan(dst, offset + y * stride, w, color, transparency);
+		}
+	}
+
+	/**
+	 * Blends a rectangle of pixels of src into dst. Each rectangle starts at
+	 * its offset and its rows are stride pixels apart.
+	 */
+	public static void blendRect(int[] dst, int dstOffset, int dstStride,
+	                             int[] src, int srcOffset, int srcStride,
+	                             int w, int h, int transparency) {
+		for(int y = 0; y < h; y++) {
+			blendSpan(dst, dstOffset + y * dstStride, src, srcOffset + y * srcStride, w, transparency);
+		}
+	}
+
+	public static int premultiply(int argb) {
+		int a = argb >>> 24;
+		if(a == 0xff) return argb;
+
+		int rb = div255((argb & 0xff00ff) * a);
+		int g = div255(((argb >> 8) & 0xff) * a);
+		return a << 24 | rb | g << 8;
+	}
+
+	public static int unpremultiply(int argb) {
+		int a = argb >>> 24;
+		if(a == 0xff) return argb;
+		if(a == 0) return 0;
+
+		int r = ((argb >> 16) & 0xff) * 0xff / a;
+		int g = ((argb >> 8) & 0xff) * 0xff / a;
+		int b = (argb & 0xff) * 0xff / a;
+		return a << 24 | r << 16 | g << 8 | b;
+	}
+
+	/**
+	 * Draws the premultiplied color src over dst, after multiplying src by
+	 * transparency / 255.
+	 */
+	public static int composite(int src, int dst, int transparency) {
+		if(transparency != 0xff) {
+			src = div255((src & 0xff00ff) * transparency) | div255(((src >>> 8) & 0xff00ff) * transparency) << 8;
+		}
+
+		int inverse = 0xff - (src >>> 24);
+		if(inverse == 0) return src;
+
+		int rb = (src & 0xff00ff) + div255((dst & 0xff00ff) * inverse);
+		int ag = ((src >>> 8) & 0xff00ff) + div255(((dst >>> 8) & 0xff00ff) * inverse);
+		return rb | ag << 8;
+	}
+
+	/**
+	 * Composites the premultiplied color over length pixels, starting from
+	 * offset.
+	 */
+	public static void compositeSpan(int[] dst, int offset, int length, int color, int transparency) {
+		color = composite(color, 0, transparency);
+
+		int inverse = 0xff - (color >>> 24);
+		if(inverse == 0) {
+			Arrays.fill(dst, offset, offset + length, color);
+			return;
+		}
+
+		int rb0 = color & 0xff00ff;
+		int ag0 = (color >>> 8) & 0xff00ff;
+
+		int end = offset + length;
+		for(int i = offset; i < end; i++) {
+			int old = dst[i];
+
+			int rb = rb0 + div255((old & 0xff00ff) * inverse);
+			int ag = ag0 + div255(((old >>> 8) & 0xff00ff) * inverse);
+			dst[i] = rb | ag << 8;
+		}
+	}
+
+	/**
+	 * Composites length premultiplied pixels of src, starting from
+	 * srcOffset, over dst, starting from dstOffset.
+	 */
+	public static void compositeSpan(int[] dst, int dstOffset, int[] src, int srcOffset, int length, int transparency) {
+		for(int i = 0; i < length; i++) {
+			int color = src[srcOffset + i];
+
+			// fully transparent pixels do not change dst
+			if(color != 0) {
+				dst[dstOffset + i] = composite(color, dst[dstOffset + i], transparency);
+			}
+		}
+	}
+
+	/**
+	 * Composites the premultiplied color over length pixels of dst,
+	 * starting from dstOffset. The color is multiplied by
+	 * mask * transparency / 255, where mask is the unsigned value of the
+	 * matching byte.
+	 */
+	public static void compositeMask(int[] dst, int dstOffset, byte[] mask, int maskOffset, int length,
+	                                 int color, int transparency) {
+		for(int i = 0; i < length; i++) {
+			int alpha = div255((mask[maskOffset + i] & 0xff) * transparency);
+			if(alpha != 0) {
+				dst[dstOffset + i] = composite(color, dst[dstOffset + i], alpha);
+			}
+		}
+	}
+
+}
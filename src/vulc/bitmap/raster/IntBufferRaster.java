@@ -0,0 +1,189 @@
+package vulc.bitmap.raster;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * IntBufferRaster stores the pixels in IntBuffers instead of a Java array,
+ * so they can be off-heap or mapped from a file.<br>
+ * The pixels are split into segments of 2^28 pixels, because a single
+ * buffer cannot be larger than 2GB.
+ *
+ * @author Vulcalien
+ */
+public class IntBufferRaster extends Raster<Integer> {
+
+	public static final int SEGMENT_SHIFT = 28;
+	public static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+	private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	private final IntBuffer[] segments;
+
+	public IntBufferRaster(int width, int height, IntBuffer... segments) {
+		super(width, height);
+		this.segments = segments;
+
+		int size = width * height;
+		if(segments.length != segmentsFor(size)) throw new IllegalArgumentException("Wrong number of segments");
+		for(int s = 0; s < segments.length; s++) {
+			if(segments[s].limit() != segmentLength(size, s)) throw new IllegalArgumentException("Wrong segment size");
+		}
+	}
+
+	public static IntBufferRaster allocateDirect(int width, int height) {
+		int size = width * height;
+
+		IntBuffer[] segments = new IntBuffer[segmentsFor(size)];
+		for(int s = 0; s < segments.length; s++) {
+			segments[s] = ByteBuffer.allocateDirect(segmentLength(size, s) * 4)
+			                        .order(ByteOrder.nativeOrder())
+			                        .asIntBuffer();
+		}
+		return new IntBufferRaster(width, height, segments);
+	}
+
+	public static IntBufferRaster map(FileChannel channel, MapMode mode, long position,
+	                                  int width, int height, ByteOrder order) throws IOException {
+		int size = width * height;
+
+		IntBuffer[] segments = new IntBuffer[segmentsFor(size)];
+		for(int s = 0; s < segments.length; s++) {
+			long offset = position + (long) s * SEGMENT_SIZE * 4;
+			segments[s] = channel.map(mode, offset, segmentLength(size, s) * 4L)
+			                     .order(order)
+			                     .asIntBuffer();
+		}
+		return new IntBufferRaster(width, height, segments);
+	}
+
+	/**
+	 * Maps the file for reading and writing. If the file is too small, it
+	 * is extended. The pixels are stored in big-endian order.
+	 */
+	public static IntBufferRaster map(File file, int width, int height) throws IOException {
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			long length = (long) width * height * 4;
+			if(raf.length() < length) raf.setLength(length);
+
+			// the mapping remains valid after the channel is closed
+			return map(raf.getChannel(), MapMode.READ_WRITE, 0, width, height, ByteOrder.BIG_ENDIAN);
+		}
+	}
+
+	private static int segmentsFor(int size) {
+		return (int) (((long) size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+	}
+
+	private static int segmentLength(int size, int segment) {
+		return Math.min(size - (segment << SEGMENT_SHIFT), SEGMENT_SIZE);
+	}
+
+	public boolean canWriteRowsInParallel() {
+		return true;
+	}
+
+	public void setPixel(int i, Integer color) {
+		setInt(i, color);
+	}
+
+	public Integer getPixel(int i) {
+		return getInt(i);
+	}
+
+	public void setInt(int i, int color) {
+		segments[i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, color);
+	}
+
+	public int getInt(int i) {
+		return segments[i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);
+	}
+
+	public void getInts(int i, int[] dst, int offset, int length) {
+		while(length > 0) {
+			IntBuffer segment = segments[i >>> SEGMENT_SHIFT].duplicate();
+			int pos = i & SEGMENT_MASK;
+			int n = Math.min(length, segment.limit() - pos);
+
+			segment.position(pos);
+			segment.get(dst, offset, n);
+
+			i += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	public void setInts(int i, int[] src, int offset, int length) {
+		while(length > 0) {
+			IntBuffer segment = segments[i >>> SEGMENT_SHIFT].duplicate();
+			int pos = i & SEGMENT_MASK;
+			int n = Math.min(length, segment.limit() - pos);
+
+			segment.position(pos);
+			segment.put(src, offset, n);
+
+			i += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	public void copyPixel(int i, Raster<Integer> src, int srcIndex) {
+		if(src instanceof IntBufferRaster) {
+			setInt(i, ((IntBufferRaster) src).getInt(srcIndex));
+		} else {
+			super.copyPixel(i, src, srcIndex);
+		}
+	}
+
+	public void fill(int from, int to, Integer color) {
+		int c = color;
+		while(from < to) {
+			IntBuffer segment = segments[from >>> SEGMENT_SHIFT];
+			int pos = from & SEGMENT_MASK;
+			int n = Math.min(to - from, segment.limit() - pos);
+
+			// set the first pixel, then keep copying the filled part after itself
+			segment.put(pos, c);
+			for(int filled = 1; filled < n; filled *= 2) {
+				int count = Math.min(filled, n - filled);
+
+				IntBuffer src = segment.duplicate();
+				src.limit(pos + count).position(pos);
+
+				IntBuffer dst = segment.duplicate();
+				dst.position(pos + filled);
+				dst.put(src);
+			}
+			from += n;
+		}
+	}
+
+	public void copyPixels(int i, Raster<Integer> src, int srcIndex, int length) {
+		if(src instanceof IntRaster) {
+			setInts(i, ((IntRaster) src).pixels, srcIndex, length);
+		} else if(src instanceof IntBufferRaster) {
+			IntBufferRaster buffer = (IntBufferRaster) src;
+
+			// if the ranges overlap, copy backwards
+			if(buffer == this && i > srcIndex) {
+				for(int j = length - 1; j >= 0; j--) {
+					setInt(i + j, getInt(srcIndex + j));
+				}
+			} else {
+				for(int j = 0; j < length; j++) {
+					setInt(i + j, buffer.getInt(srcIndex + j));
+				}
+			}
+		} else {
+			super.copyPixels(i, src, srcIndex, length);
+		}
+	}
+
+}
@@ -1,8 +1,10 @@
 package vulc.bitmap.raster;
 
+import java.util.Arrays;
+
 public class IntRaster extends Raster<Integer> {
 
-	private final int[] pixels;
+	final int[] pixels;
 
 	public IntRaster(int width, int height, int[] pixels) {
 		super(width, height);
@@ -15,6 +17,18 @@ public class IntRaster extends Raster<Integer> {
 		this(width, height, new int[width * height]);
 	}
 
+	/**
+	 * Returns the array of the pixels, not a copy: changing it changes the
+	 * raster.
+	 */
+	public int[] getArray() {
+		return pixels;
+	}
+
+	public boolean canWriteRowsInParallel() {
+		return true;
+	}
+
 	public void setPixel(int i, Integer color) {
 		pixels[i] = color;
 	}
@@ -23,4 +37,86 @@ public class IntRaster extends Raster<Integer> {
 		return pixels[i];
 	}
 
+	public void setInt(int i, int color) {
+		pixels[i] = color;
+	}
+
+	public int getInt(int i) {
+		return pixels[i];
+	}
+
+	public void copyPixel(int i, Raster<Integer> src, int srcIndex) {
+		if(src instanceof IntRaster) {
+			pixels[i] = ((IntRaster) src).pixels[srcIndex];
+		} else {
+			super.copyPixel(i, src, srcIndex);
+		}
+	}
+
+	public void fill(int from, int to, Integer color) {
+		Arrays.fill(pixels, from, to, color);
+	}
+
+	public void copyPixels(int i, Raster<Integer> src, int srcIndex, int length) {
+		if(src instanceof IntRaster) {
+			System.arraycopy(((IntRaster) src).pixels, srcIndex, pixels, i, length);
+		} else if(src instanceof IntBufferRaster) {
+			((IntBufferRaster) src).getInts(srcIndex, pixels, i, length);
+		} else if(src instanceof TiledIntRaster) {
+			((TiledIntRaster) src).getInts(srcIndex, pixels, i, length);
+		} else {
+			super.copyPixels(i, src, srcIndex, length);
+		}
+	}
+
+	public void blend(int from, int to, int color, int transparency) {
+		IntBlender.blendSpan(pixels, from, to - from, color, transparency);
+	}
+
+	public void blendPixels(int i, Raster<Integer> src, int srcIndex, int length, int transparency) {
+		if(src instanceof IntRaster) {
+			IntBlender.blendSpan(pixels, i, ((IntRaster) src).pixels, srcIndex, length, transparency);
+		} else {
+			for(int j = 0; j < length; j++) {
+				pixels[i + j] = IntBlender.blend(src.getPixel(srcIndex + j), pixels[i + j], transparency);
+			}
+		}
+	}
+
+	public void blendMask(int i, Raster<Byte> mask, int maskIndex, int length, int color, int transparency) {
+		if(mask instanceof ByteRaster) {
+			IntBlender.blendMask(pixels, i, ((ByteRaster) mask).pixels, maskIndex, length, color, transparency);
+		} else {
+			for(int j = 0; j < length; j++) {
+				int alpha = Byte.toUnsignedInt(mask.getPixel(maskIndex + j)) * transparency / 0xff;
+				pixels[i + j] = IntBlender.blend(color, pixels[i + j], alpha);
+			}
+		}
+	}
+
+	public void composite(int from, int to, int color, int transparency) {
+		IntBlender.compositeSpan(pixels, from, to - from, color, transparency);
+	}
+
+	public void compositePixels(int i, Raster<Integer> src, int srcIndex, int length, int transparency) {
+		if(src instanceof IntRaster) {
+			IntBlender.compositeSpan(pixels, i, ((IntRaster) src).pixels, srcIndex, length, transparency);
+		} else {
+			for(int j = 0; j < length; j++) {
+				pixels[i + j] = IntBlender.composite(src.getPixel(srcIndex + j), pixels[i + j], transparency);
+			}
+		}
+	}
+
+	public void compositeMask(int i, Raster<Byte> mask, int maskIndex, int length, int color, int transparency) {
+		if(mask instanceof ByteRaster) {
+			IntBlender.compositeMask(pixels, i, ((ByteRaster) mask).pixels, maskIndex, length, color, transparency);
+		} else {
+			for(int j = 0; j < length; j++) {
+				int alpha = Byte.toUnsignedInt(mask.getPixel(maskIndex + j)) * transparency / 0xff;
+				pixels[i + j] = IntBlender.composite(color, pixels[i + j], alpha);
+			}
+		}
+	}
+
 }
@@ -13,4 +13,69 @@ public abstract class Raster<T> {
 
 	public abstract T getPixel(int i);
 
+	public void setPixel(int x, int y, T color) {
+		setPixel(x + y * width, color);
+	}
+
+	public T getPixel(int x, int y) {
+		return getPixel(x + y * width);
+	}
+
+	/**
+	 * Returns true if different rows can be written by different threads at
+	 * the same time.
+	 */
+	public boolean canWriteRowsInParallel() {
+		return false;
+	}
+
+	public void copyPixel(int i, Raster<T> src, int srcIndex) {
+		if(src instanceof ViewRaster) {
+			ViewRaster<T> view = (ViewRaster<T>) src;
+			copyPixel(i, view.getParent(), view.index(srcIndex));
+		} else {
+			setPixel(i, src.getPixel(srcIndex));
+		}
+	}
+
+	public void fill(int from, int to, T color) {
+		for(int i = from; i < to; i++) {
+			setPixel(i, color);
+		}
+	}
+
+	public void copyPixels(int i, Raster<T> src, int srcIndex, int length) {
+		if(src instanceof ViewRaster) {
+			ViewRaster<T> view = (ViewRaster<T>) src;
+
+			// copy the parts of the row that are contiguous in the parent
+			while(length > 0) {
+				int n = Math.min(length, view.width - srcIndex % view.width);
+				copyPixels(i, view.getParent(), view.index(srcIndex), n);
+
+				i += n;
+				srcIndex += n;
+				length -= n;
+			}
+			return;
+		}
+
+		if(src instanceof TransformRaster) {
+			((TransformRaster<T>) src).copyTo(this, i, srcIndex, length);
+			return;
+		}
+
+		for(int j = 0; j < length; j++) {
+			setPixel(i + j, src.getPixel(srcIndex + j));
+		}
+	}
+
+	public void copyRect(int x, int y, Raster<T> src, int xs, int ys, int w, int h) {
+		if(w <= 0 || h <= 0) return;
+
+		for(int row = 0; row < h; row++) {
+			copyPixels(x + (y + row) * width, src, xs + (ys + row) * src.width, w);
+		}
+	}
+
 }
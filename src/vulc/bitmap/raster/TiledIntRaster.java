@@ -0,0 +1,219 @@
+package vulc.bitmap.raster;
+
+import java.util.Arrays;
+
+/**
+ * TiledIntRaster divides the pixels into square tiles that are allocated
+ * only when a pixel different from the background is written into them.
+ * Unallocated tiles are read as the background color.
+ *
+ * @author Vulcalien
+ */
+public class TiledIntRaster extends Raster<Integer> {
+
+	public static final int TILE_SHIFT = 6;
+	public static final int TILE_SIZE = 1 << TILE_SHIFT;
+	private static final int TILE_MASK = TILE_SIZE - 1;
+
+	private final int xTiles;
+	private final int[][] tiles;
+
+	private int background;
+
+	public TiledIntRaster(int width, int height, int background) {
+		super(width, height);
+		this.background = background;
+
+		this.xTiles = (width + TILE_MASK) >> TILE_SHIFT;
+		int yTiles = (height + TILE_MASK) >> TILE_SHIFT;
+		this.tiles = new int[xTiles * yTiles][];
+	}
+
+	public TiledIntRaster(int width, int height) {
+		this(width, height, 0);
+	}
+
+	public int getBackground() {
+		return background;
+	}
+
+	public int getAllocatedTiles() {
+		int count = 0;
+		for(int t = 0; t < tiles.length; t++) {
+			if(tiles[t] != null) count++;
+		}
+		return count;
+	}
+
+	public boolean isTileAllocated(int xt, int yt) {
+		return tiles[xt + yt * xTiles] != null;
+	}
+
+	private int[] allocateTile(int t) {
+		int[] tile = new int[TILE_SIZE * TILE_SIZE];
+		if(background != 0) Arrays.fill(tile, background);
+
+		tiles[t] = tile;
+		return tile;
+	}
+
+	public void setPixel(int i, Integer color) {
+		setInt(i, color);
+	}
+
+	public Integer getPixel(int i) {
+		return getInt(i);
+	}
+
+	public void setPixel(int x, int y, Integer color) {
+		setInt(x, y, color);
+	}
+
+	public Integer getPixel(int x, int y) {
+		return getInt(x, y);
+	}
+
+	public void setInt(int i, int color) {
+		setInt(i % width, i / width, color);
+	}
+
+	public int getInt(int i) {
+		return getInt(i % width, i / width);
+	}
+
+	public void setInt(int x, int y, int color) {
+		int t = (x >> TILE_SHIFT) + (y >> TILE_SHIFT) * xTiles;
+
+		int[] tile = tiles[t];
+		if(tile == null) {
+			if(color == background) return;
+			tile = allocateTile(t);
+		}
+		tile[(x & TILE_MASK) + ((y & TILE_MASK) << TILE_SHIFT)] = color;
+	}
+
+	public int getInt(int x, int y) {
+		int[] tile = tiles[(x >> TILE_SHIFT) + (y >> TILE_SHIFT) * xTiles];
+		if(tile == null) return background;
+
+		return tile[(x & TILE_MASK) + ((y & TILE_MASK) << TILE_SHIFT)];
+	}
+
+	public void getInts(int i, int[] dst, int offset, int length) {
+		while(length > 0) {
+			int x = i % width;
+			int y = i / width;
+			int n = Math.min(length, Math.min(width - x, TILE_SIZE - (x & TILE_MASK)));
+
+			int[] tile = tiles[(x >> TILE_SHIFT) + (y >> TILE_SHIFT) * xTiles];
+			if(tile == null) {
+				Arrays.fill(dst, offset, offset + n, background);
+			} else {
+				int pos = (x & TILE_MASK) + ((y & TILE_MASK) << TILE_SHIFT);
+				System.arraycopy(tile, pos, dst, offset, n);
+			}
+
+			i += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	public void setInts(int i, int[] src, int offset, int length) {
+		while(length > 0) {
+			int x = i % width;
+			int y = i / width;
+			int n = Math.min(length, Math.min(width - x, TILE_SIZE - (x & TILE_MASK)));
+
+			int t = (x >> TILE_SHIFT) + (y >> TILE_SHIFT) * xTiles;
+			int[] tile = tiles[t];
+			if(tile == null && !isUniform(src, offset, offset + n, background)) {
+				tile = allocateTile(t);
+			}
+
+			if(tile != null) {
+				int pos = (x & TILE_MASK) + ((y & TILE_MASK) << TILE_SHIFT);
+				System.arraycopy(src, offset, tile, pos, n);
+			}
+
+			i += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	private static boolean isUniform(int[] array, int from, int to, int value) {
+		for(int i = from; i < to; i++) {
+			if(array[i] != value) return false;
+		}
+		return true;
+	}
+
+	public void copyPixel(int i, Raster<Integer> src, int srcIndex) {
+		if(src instanceof TiledIntRaster) {
+			setInt(i, ((TiledIntRaster) src).getInt(srcIndex));
+		} else {
+			super.copyPixel(i, src, srcIndex);
+		}
+	}
+
+	public void fill(int from, int to, Integer color) {
+		int c = color;
+
+		// filling the whole raster: drop all the tiles
+		if(from == 0 && to == width * height) {
+			Arrays.fill(tiles, null);
+			background = c;
+			return;
+		}
+
+		int i = from;
+		while(i < to) {
+			int x = i % width;
+			int y = i / width;
+			int n = Math.min(to - i, Math.min(width - x, TILE_SIZE - (x & TILE_MASK)));
+
+			int t = (x >> TILE_SHIFT) + (y >> TILE_SHIFT) * xTiles;
+			int[] tile = tiles[t];
+			if(tile == null && c != background) {
+				tile = allocateTile(t);
+			}
+
+			if(tile != null) {
+				int pos = (x & TILE_MASK) + ((y & TILE_MASK) << TILE_SHIFT);
+				Arrays.fill(tile, pos, pos + n, c);
+			}
+			i += n;
+		}
+	}
+
+	public void copyPixels(int i, Raster<Integer> src, int srcIndex, int length) {
+		if(src instanceof IntRaster) {
+			setInts(i, ((IntRaster) src).pixels, srcIndex, length);
+		} else if(src instanceof TiledIntRaster && !(src == this && i > srcIndex)) {
+			TiledIntRaster tiled = (TiledIntRaster) src;
+
+			// copy the source tile by tile, skipping the unallocated ones
+			while(length > 0) {
+				int x = srcIndex % tiled.width;
+				int y = srcIndex / tiled.width;
+				int n = Math.min(length, Math.min(tiled.width - x, TILE_SIZE - (x & TILE_MASK)));
+
+				int[] tile = tiled.tiles[(x >> TILE_SHIFT) + (y >> TILE_SHIFT) * tiled.xTiles];
+				if(tile == null) {
+					fill(i, i + n, tiled.background);
+				} else {
+					int pos = (x & TILE_MASK) + ((y & TILE_MASK) << TILE_SHIFT);
+					setInts(i, tile, pos, n);
+				}
+
+				i += n;
+				srcIndex += n;
+				length -= n;
+			}
+		} else {
+			super.copyPixels(i, src, srcIndex, length);
+		}
+	}
+
+}
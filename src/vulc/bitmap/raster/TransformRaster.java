@@ -0,0 +1,136 @@
+package vulc.bitmap.raster;
+
+/**
+ * TransformRaster is a flipped, rotated or scaled view of another raster.
+ * It has no pixels of its own: the coordinates are remapped and reads and
+ * writes go to the parent raster.<br>
+ * The pixel (x, y) of the view is the pixel (x0 + xx * u + xy * v,
+ * y0 + yx * u + yy * v) of the parent, where u = x / xScale and
+ * v = y / yScale.
+ *
+ * @author Vulcalien
+ */
+public class TransformRaster<T> extends Raster<T> {
+
+	private final Raster<T> parent;
+
+	private final int xScale, yScale;
+	private final int xx, xy, x0;
+	private final int yx, yy, y0;
+
+	private TransformRaster(Raster<T> parent, int width, int height,
+	                        int xScale, int yScale,
+	                        int xx, int xy, int x0,
+	                        int yx, int yy, int y0) {
+		super(width, height);
+		this.parent = parent;
+
+		this.xScale = xScale;
+		this.yScale = yScale;
+
+		this.xx = xx;
+		this.xy = xy;
+		this.x0 = x0;
+
+		this.yx = yx;
+		this.yy = yy;
+		this.y0 = y0;
+	}
+
+	public static <T> TransformRaster<T> flipped(Raster<T> parent, boolean horizontal, boolean vertical) {
+		int w = parent.width;
+		int h = parent.height;
+
+		return new TransformRaster<T>(parent, w, h, 1, 1,
+		                              horizontal ? -1 : 1, 0, horizontal ? w - 1 : 0,
+		                              0, vertical ? -1 : 1, vertical ? h - 1 : 0);
+	}
+
+	public static <T> TransformRaster<T> rotated(Raster<T> parent, int rot) {
+		rot &= 3;
+
+		int w = parent.width;
+		int h = parent.height;
+
+		if(rot == 0) {
+			return new TransformRaster<T>(parent, w, h, 1, 1, 1, 0, 0, 0, 1, 0);
+		} else if(rot == 1) {
+			return new TransformRaster<T>(parent, h, w, 1, 1, 0, 1, 0, -1, 0, h - 1);
+		} else if(rot == 2) {
+			return new TransformRaster<T>(parent, w, h, 1, 1, -1, 0, w - 1, 0, -1, h - 1);
+		} else {
+			return new TransformRaster<T>(parent, h, w, 1, 1, 0, -1, w - 1, 1, 0, 0);
+		}
+	}
+
+	public static <T> TransformRaster<T> scaled(Raster<T> parent, int xScale, int yScale) {
+		if(xScale <= 0 || yScale <= 0) throw new IllegalArgumentException("Scale must be positive");
+
+		return new TransformRaster<T>(parent, parent.width * xScale, parent.height * yScale,
+		                              xScale, yScale, 1, 0, 0, 0, 1, 0);
+	}
+
+	public Raster<T> getParent() {
+		return parent;
+	}
+
+	/**
+	 * Returns the index, in the parent raster, of the pixel (x, y) of this
+	 * view.
+	 */
+	public int index(int x, int y) {
+		int u = x / xScale;
+		int v = y / yScale;
+		return (x0 + xx * u + xy * v) + (y0 + yx * u + yy * v) * parent.width;
+	}
+
+	public void setPixel(int i, T color) {
+		parent.setPixel(index(i % width, i / width), color);
+	}
+
+	public T getPixel(int i) {
+		return parent.getPixel(index(i % width, i / width));
+	}
+
+	public void setPixel(int x, int y, T color) {
+		parent.setPixel(index(x, y), color);
+	}
+
+	public T getPixel(int x, int y) {
+		return parent.getPixel(index(x, y));
+	}
+
+	/**
+	 * Copies the pixels of this view, starting from srcIndex, into dst.
+	 * The position in the parent raster is updated incrementally along each
+	 * row, so the pixels are copied with dst.copyPixel.
+	 */
+	public void copyTo(Raster<T> dst, int i, int srcIndex, int length) {
+		int x = srcIndex % width;
+		int y = srcIndex / width;
+
+		// how much the parent index changes when u increases by one
+		int step = xx + yx * parent.width;
+
+		while(length > 0) {
+			int n = Math.min(length, width - x);
+
+			int p = index(x, y);
+			int r = x % xScale;
+			for(int j = 0; j < n; j++) {
+				dst.copyPixel(i + j, parent, p);
+
+				if(++r == xScale) {
+					r = 0;
+					p += step;
+				}
+			}
+
+			i += n;
+			length -= n;
+			x = 0;
+			y++;
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+package vulc.bitmap.raster;
+
+/**
+ * ViewRaster is a rectangular region of another raster. It has no pixels
+ * of its own: reads and writes go to the parent raster.<br>
+ * The pixel (x, y) of the view is the pixel (offset + x + y * stride) of
+ * the parent.
+ *
+ * @author Vulcalien
+ */
+public class ViewRaster<T> extends Raster<T> {
+
+	private final Raster<T> parent;
+	private final int offset;
+	private final int stride;
+
+	public ViewRaster(Raster<T> parent, int x, int y, int width, int height) {
+		super(width, height);
+
+		if(x < 0 || y < 0 || width < 0 || height < 0
+		   || x + width > parent.width || y + height > parent.height) {
+			throw new IllegalArgumentException("View is outside of the parent raster");
+		}
+
+		// a view of a view is a view of the same parent
+		if(parent instanceof ViewRaster) {
+			ViewRaster<T> view = (ViewRaster<T>) parent;
+			this.parent = view.parent;
+			this.offset = view.offset + x + y * view.stride;
+			this.stride = view.stride;
+		} else {
+			this.parent = parent;
+			this.offset = x + y * parent.width;
+			this.stride = parent.width;
+		}
+	}
+
+	public Raster<T> getParent() {
+		return parent;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getStride() {
+		return stride;
+	}
+
+	/**
+	 * Returns the index, in the parent raster, of the pixel i of this view.
+	 */
+	public int index(int i) {
+		if(width == stride) return offset + i;
+		return offset + i % width + (i / width) * stride;
+	}
+
+	public boolean canWriteRowsInParallel() {
+		return parent.canWriteRowsInParallel();
+	}
+
+	public void setPixel(int i, T color) {
+		parent.setPixel(index(i), color);
+	}
+
+	public T getPixel(int i) {
+		return parent.getPixel(index(i));
+	}
+
+	public void setPixel(int x, int y, T color) {
+		parent.setPixel(offset + x + y * stride, color);
+	}
+
+	public T getPixel(int x, int y) {
+		return parent.getPixel(offset + x + y * stride);
+	}
+
+	public void copyPixel(int i, Raster<T> src, int srcIndex) {
+		parent.copyPixel(index(i), src, srcIndex);
+	}
+
+	public void fill(int from, int to, T color) {
+		// fill row by row
+		while(from < to) {
+			int n = Math.min(to - from, width - from % width);
+			int start = index(from);
+			parent.fill(start, start + n, color);
+
+			from += n;
+		}
+	}
+
+	public void copyPixels(int i, Raster<T> src, int srcIndex, int length) {
+		// copy the parts of the row that are contiguous in both rasters
+		while(length > 0) {
+			int n = Math.min(length, width - i % width);
+			if(src instanceof ViewRaster) {
+				n = Math.min(n, src.width - srcIndex % src.width);
+			}
+			parent.copyPixels(index(i), src, srcIndex, n);
+
+			i += n;
+			srcIndex += n;
+			length -= n;
+		}
+	}
+
+}
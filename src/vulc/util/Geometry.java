@@ -1,79 +1,364 @@
 package vulc.util;
 
 import vulc.bitmap.Bitmap;
+import vulc.bitmap.metrics.RenderMetrics;
 
 /**
- * Geometry allows to draw some geometry shapes in a Bitmap.
+ * Geometry allows to draw some geometry shapes in a Bitmap.<br>
+ * Only integer arithmetic is used: lines are clipped once and then drawn
+ * without checking each pixel, and filled shapes are drawn as horizontal
+ * spans using Bitmap.fill.<br>
+ * The pixels of the outlines are drawn with setPixel at full transparency,
+ * which blends like Bitmap.fill, and each pixel of a shape is drawn once:
+ * a shape blends the same way whatever its kind or angle.
  * @author Vulcalien
  */
 public final class Geometry {
 
+	// outcodes of Cohen-Sutherland clipping, to reject lines outside the bitmap
+	private static final int LEFT = 1;
+	private static final int RIGHT = 2;
+	private static final int TOP = 4;
+	private static final int BOTTOM = 8;
+
 	private Geometry() {
 	}
 
 	private static <T> void checkSetPixel(Bitmap<T> bitmap, int x, int y, T color) {
 		if(x < 0 || y < 0 || x >= bitmap.width || y >= bitmap.height) return;
-		bitmap.setPixel(x, y, color);
+		bitmap.setPixel(x, y, color, 0xff);
+	}
+
+	private static int outCode(Bitmap<?> bitmap, int x, int y) {
+		int code = 0;
+		if(x < 0) code |= LEFT;
+		else if(x >= bitmap.width) code |= RIGHT;
+		if(y < 0) code |= TOP;
+		else if(y >= bitmap.height) code |= BOTTOM;
+		return code;
+	}
+
+	// the smallest integer >= a / b (b > 0)
+	private static long ceilDiv(long a, long b) {
+		return -Math.floorDiv(-a, b);
 	}
 
 	public static <T> void drawLine(Bitmap<T> bitmap, T color, int x0, int y0, int x1, int y1) {
-		int xd = x1 - x0;
-		int yd = y1 - y0;
-		double d = Math.sqrt(xd * xd + yd * yd);
+		long startTime = RenderMetrics.enter();
+		long pixels = 0;
+
+		try {
+			pixels = line(bitmap, color, x0, y0, x1, y1, true);
+		} finally {
+			RenderMetrics.exit(startTime, bitmap, RenderMetrics.LINE, 1, pixels, 0xff);
+		}
+	}
+
+	// draws the line and returns the number of pixels drawn, after clipping
+	// if last is false, the pixel of (x1, y1) is not drawn
+	private static <T> long line(Bitmap<T> bitmap, T color, int x0, int y0, int x1, int y1, boolean last) {
+		if(!last) {
+			if(x0 == x1 && y0 == y1) return 0;
+
+			// horizontal and vertical lines end one pixel earlier
+			if(x0 == x1) y1 -= Integer.signum(y1 - y0);
+			else if(y0 == y1) x1 -= Integer.signum(x1 - x0);
+		}
+
+		// both endpoints are on the same outer side
+		if((outCode(bitmap, x0, y0) & outCode(bitmap, x1, y1)) != 0) return 0;
+
+		// horizontal and vertical lines are filled at once
+		if(x0 == x1 || y0 == y1) {
+			bitmap.fill(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1), color);
+			return RenderMetrics.area(bitmap, Math.min(x0, x1), Math.min(y0, y1), Math.abs(x1 - x0) + 1, Math.abs(y1 - y0) + 1);
+		}
+
+		// a is the major axis, b the minor one
+		boolean steep = Math.abs(y1 - y0) > Math.abs(x1 - x0);
+		int a0 = steep ? y0 : x0;
+		int b0 = steep ? x0 : y0;
+		int sa = Integer.signum(steep ? y1 - y0 : x1 - x0);
+		int sb = Integer.signum(steep ? x1 - x0 : y1 - y0);
+		long da = Math.abs(steep ? y1 - y0 : x1 - x0);
+		long db = Math.abs(steep ? x1 - x0 : y1 - y0);
+		int aSize = steep ? bitmap.height : bitmap.width;
+		int bSize = steep ? bitmap.width : bitmap.height;
+
+		// the pixel of step i is (a0 + sa * i, b0 + sb * q(i)),
+		// where q(i) = floor((2 * i * db + da) / (2 * da))
+		// the line is clipped once, by finding the steps that are inside the bitmap
+		long iStart = 0, iEnd = last ? da : da - 1;
+		long qMin, qMax;
+		if(sa > 0) {
+			iStart = Math.max(iStart, -a0);
+			iEnd = Math.min(iEnd, aSize - 1 - a0);
+		} else {
+			iStart = Math.max(iStart, a0 - (aSize - 1));
+			iEnd = Math.min(iEnd, a0);
+		}
+		if(sb > 0) {
+			qMin = -b0;
+			qMax = bSize - 1 - b0;
+		} else {
+			qMin = b0 - (bSize - 1);
+			qMax = b0;
+		}
+		iStart = Math.max(iStart, ceilDiv((2 * qMin - 1) * da, 2 * db));
+		iEnd = Math.min(iEnd, ceilDiv((2 * qMax + 1) * da, 2 * db) - 1);
+		if(iStart > iEnd) return 0;
 
-		double angle = Math.atan2(yd, xd);
+		// the pixels are marked once, not one by one
+		bitmap.markDirty(Math.min(x0, x1), Math.min(y0, y1), Math.abs(x1 - x0) + 1, Math.abs(y1 - y0) + 1);
 
-		for(int i = 0; i <= d; i++) {
-			int xPix = (int) (x0 + i * Math.cos(angle) + 0.5);
-			int yPix = (int) (y0 + i * Math.sin(angle) + 0.5);
+		long num = 2 * iStart * db + da;
+		long q = Math.floorDiv(num, 2 * da);
+		long error = num - q * 2 * da;
 
-			if(!(xPix < 0 || xPix >= bitmap.width || yPix < 0 || yPix >= bitmap.height)) {
-				bitmap.setPixel(xPix, yPix, color);
+		int a = (int) (a0 + sa * iStart);
+		int b = (int) (b0 + sb * q);
+		for(long i = iStart; i <= iEnd; i++) {
+			// like fill, a translucent color is blended
+			if(steep) bitmap.setPixel(b, a, color, 0xff);
+			else bitmap.setPixel(a, b, color, 0xff);
+
+			a += sa;
+			error += 2 * db;
+			if(error >= 2 * da) {
+				error -= 2 * da;
+				b += sb;
 			}
 		}
-	}
 
-	private static <T> void drawCircle(Bitmap<T> bitmap, T color, int xc, int yc, int radius, boolean fill) {
-		double sin_cos_45 = Math.sqrt(2) / 2;
+		return iEnd - iStart + 1;
+	}
 
-		// w = (1 - cos(45)) * r
-		// h = sin(45) * r
-		int w = (int) Math.ceil((1 - sin_cos_45) * radius);
-		int h = (int) Math.ceil(sin_cos_45 * radius);
+	public static <T> void drawCircle(Bitmap<T> bitmap, T color, int xc, int yc, int radius) {
+		long startTime = RenderMetrics.enter();
+		try {
+			if(radius < 0) return;
+			bitmap.markDirty(xc - radius, yc - radius, 2 * radius + 1, 2 * radius + 1);
 
-		for(int y = -h; y <= 0; y++) {
-			for(int x = radius - w; x <= radius; x++) {
-				int distance = (int) Math.round(Math.sqrt(x * x + y * y));
+			// midpoint circle: each point of the first octant is mirrored to the others
+			// on the diagonal, the point and its mirror are the same pixel
+			int x = radius;
+			int y = 0;
+			int d = 1 - radius;
+			while(x >= y) {
+				plotEllipsePoints(bitmap, color, xc, yc, x, y);
+				if(x != y) plotEllipsePoints(bitmap, color, xc, yc, y, x);
 
-				if(fill) {
-					if(distance > radius) continue;
+				y++;
+				if(d < 0) {
+					d += 2 * y + 1;
 				} else {
-					if(distance != radius) continue;
+					x--;
+					d += 2 * (y - x) + 1;
 				}
+			}
+		} finally {
+			RenderMetrics.exit(startTime, bitmap, RenderMetrics.CIRCLE, 1, RenderMetrics.area(bitmap, xc - radius, yc - radius, 2 * radius + 1, 2 * radius + 1), 0xff);
+		}
+	}
 
-				checkSetPixel(bitmap, xc + x, yc + y, color);
-				checkSetPixel(bitmap, xc - y, yc - x, color);
-				checkSetPixel(bitmap, xc + y, yc - x, color);
-				checkSetPixel(bitmap, xc - x, yc + y, color);
-				checkSetPixel(bitmap, xc - x, yc - y, color);
-				checkSetPixel(bitmap, xc + y, yc + x, color);
-				checkSetPixel(bitmap, xc - y, yc + x, color);
-				checkSetPixel(bitmap, xc + x, yc - y, color);
+	public static <T> void fillCircle(Bitmap<T> bitmap, T color, int xc, int yc, int radius) {
+		long startTime = RenderMetrics.enter();
+		try {
+			fillEllipse(bitmap, color, xc, yc, radius, radius);
+		} finally {
+			RenderMetrics.exit(startTime, bitmap, RenderMetrics.CIRCLE, 1, RenderMetrics.area(bitmap, xc - radius, yc - radius, 2 * radius + 1, 2 * radius + 1), 0xff);
+		}
+	}
+
+	public static <T> void drawEllipse(Bitmap<T> bitmap, T color, int xc, int yc, int xRadius, int yRadius) {
+		long startTime = RenderMetrics.enter();
+		try {
+			if(xRadius < 0 || yRadius < 0) return;
+
+			if(xRadius == 0 || yRadius == 0) {
+				drawLine(bitmap, color, xc - xRadius, yc - yRadius, xc + xRadius, yc + yRadius);
+				return;
 			}
+
+			bitmap.markDirty(xc - xRadius, yc - yRadius, 2 * xRadius + 1, 2 * yRadius + 1);
+
+			long a2 = (long) xRadius * xRadius;
+			long b2 = (long) yRadius * yRadius;
+
+			// midpoint ellipse, first region: the slope is less than 1
+			int x = xRadius;
+			int y = 0;
+			long xChange = b2 * (1 - 2 * xRadius);
+			long yChange = a2;
+			long error = 0;
+			long xStop = 2 * b2 * xRadius;
+			long yStop = 0;
+			int xLast = x, yLast = y;
+			while(xStop >= yStop) {
+				plotEllipsePoints(bitmap, color, xc, yc, x, y);
+				xLast = x;
+				yLast = y;
+
+				y++;
+				yStop += 2 * a2;
+				error += yChange;
+				yChange += 2 * a2;
+				if(2 * error + xChange > 0) {
+					x--;
+					xStop -= 2 * b2;
+					error += xChange;
+					xChange += 2 * b2;
+				}
+			}
+
+			// second region: the slope is greater than 1
+			x = 0;
+			y = yRadius;
+			xChange = b2;
+			yChange = a2 * (1 - 2 * yRadius);
+			error = 0;
+			xStop = 0;
+			yStop = 2 * a2 * yRadius;
+			while(xStop <= yStop) {
+				// the last point of the first region can be reached again
+				if(x != xLast || y != yLast) plotEllipsePoints(bitmap, color, xc, yc, x, y);
+
+				x++;
+				xStop += 2 * b2;
+				error += xChange;
+				xChange += 2 * b2;
+				if(2 * error + yChange > 0) {
+					y--;
+					yStop -= 2 * a2;
+					error += yChange;
+					yChange += 2 * a2;
+				}
+			}
+		} finally {
+			RenderMetrics.exit(startTime, bitmap, RenderMetrics.ELLIPSE, 1, RenderMetrics.area(bitmap, xc - xRadius, yc - yRadius, 2 * xRadius + 1, 2 * yRadius + 1), 0xff);
 		}
+	}
 
-		if(fill) {
-			bitmap.fill(xc - radius + w + 1, yc - h + 2,
-			            xc + radius - w - 1, yc + h - 2, color);
+	// draws (xc +- x, yc +- y): on the axes, the point and its mirror are the same pixel
+	private static <T> void plotEllipsePoints(Bitmap<T> bitmap, T color, int xc, int yc, int x, int y) {
+		checkSetPixel(bitmap, xc + x, yc + y, color);
+		if(x != 0) checkSetPixel(bitmap, xc - x, yc + y, color);
+		if(y != 0) {
+			checkSetPixel(bitmap, xc + x, yc - y, color);
+			if(x != 0) checkSetPixel(bitmap, xc - x, yc - y, color);
 		}
 	}
 
-	public static <T> void drawCircle(Bitmap<T> bitmap, T color, int xc, int yc, int radius) {
-		drawCircle(bitmap, color, xc, yc, radius, false);
+	public static <T> void fillEllipse(Bitmap<T> bitmap, T color, int xc, int yc, int xRadius, int yRadius) {
+		long startTime = RenderMetrics.enter();
+		try {
+			if(xRadius < 0 || yRadius < 0) return;
+			bitmap.markDirty(xc - xRadius, yc - yRadius, 2 * xRadius + 1, 2 * yRadius + 1);
+
+			// a pixel is inside if (x / (xRadius + 0.5))^2 + (y / (yRadius + 0.5))^2 <= 1
+			// multiplied by 4 * (2 * xRadius + 1)^2 * (2 * yRadius + 1)^2 to use integers
+			long a2 = (2L * xRadius + 1) * (2L * xRadius + 1);
+			long b2 = (2L * yRadius + 1) * (2L * yRadius + 1);
+
+			int x = xRadius;
+			for(int y = 0; y <= yRadius; y++) {
+				while(x > 0 && 4L * x * x * b2 + 4L * y * y * a2 > a2 * b2) x--;
+
+				bitmap.fill(xc - x, yc + y, xc + x, yc + y, color);
+				if(y != 0) bitmap.fill(xc - x, yc - y, xc + x, yc - y, color);
+			}
+		} finally {
+			RenderMetrics.exit(startTime, bitmap, RenderMetrics.ELLIPSE, 1, RenderMetrics.area(bitmap, xc - xRadius, yc - yRadius, 2 * xRadius + 1, 2 * yRadius + 1), 0xff);
+		}
 	}
 
-	public static <T> void fillCircle(Bitmap<T> bitmap, T color, int xc, int yc, int radius) {
-		drawCircle(bitmap, color, xc, yc, radius, true);
+	/**
+	 * Draws the edges of the polygon. The pixels where two edges cross or
+	 * overlap are drawn once for each edge.
+	 */
+	public static <T> void drawPolygon(Bitmap<T> bitmap, T color, int[] xPoints, int[] yPoints, int nPoints) {
+		long startTime = RenderMetrics.enter();
+		long pixels = 0;
+
+		try {
+			// the last point of each edge is the first of the next one, so it is skipped
+			boolean last = nPoints == 1;
+			for(int i = 0; i < nPoints; i++) {
+				int j = (i + 1) % nPoints;
+				pixels += line(bitmap, color, xPoints[i], yPoints[i], xPoints[j], yPoints[j], last);
+			}
+		} finally {
+			RenderMetrics.exit(startTime, bitmap, RenderMetrics.POLYGON, 1, pixels, 0xff);
+		}
+	}
+
+	/**
+	 * Fills the polygon using the even-odd rule. A pixel is filled if its
+	 * center is inside the polygon.
+	 */
+	public static <T> void fillPolygon(Bitmap<T> bitmap, T color, int[] xPoints, int[] yPoints, int nPoints) {
+		long startTime = RenderMetrics.enter();
+		long pixels = 0;
+
+		try {
+			if(nPoints < 3) return;
+
+			int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+			int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+			for(int i = 0; i < nPoints; i++) {
+				xMin = Math.min(xMin, xPoints[i]);
+				yMin = Math.min(yMin, yPoints[i]);
+				xMax = Math.max(xMax, xPoints[i]);
+				yMax = Math.max(yMax, yPoints[i]);
+			}
+			bitmap.markDirty(xMin, yMin, xMax - xMin, yMax - yMin);
+			pixels = RenderMetrics.area(bitmap, xMin, yMin, xMax - xMin, yMax - yMin);
+
+			yMin = Math.max(yMin, 0);
+			yMax = Math.min(yMax, bitmap.height);
+
+			// the x where each edge crosses the scanline, in 16.16 fixed point
+			long[] crossings = new long[nPoints];
+
+			for(int y = yMin; y < yMax; y++) {
+				// the scanline passes through the centers of the pixels
+				long yc = 2L * y + 1;
+
+				int n = 0;
+				for(int i = 0; i < nPoints; i++) {
+					int j = (i + 1) % nPoints;
+
+					long ya = 2L * yPoints[i];
+					long yb = 2L * yPoints[j];
+					if((ya <= yc) == (yb <= yc)) continue;
+
+					long xa = (long) xPoints[i] << 16;
+					long xb = (long) xPoints[j] << 16;
+					long x = xa + Math.floorDiv((xb - xa) * (yc - ya), yb - ya);
+
+					// insertion sort: polygons have few edges
+					int k = n++;
+					while(k > 0 && crossings[k - 1] > x) {
+						crossings[k] = crossings[k - 1];
+						k--;
+					}
+					crossings[k] = x;
+				}
+
+				for(int i = 0; i + 1 < n; i += 2) {
+					// the pixels whose center is between the two crossings
+					long x0 = (crossings[i] + 0x7fff) >> 16;
+					long x1 = (crossings[i + 1] + 0x7fff) >> 16;
+					if(x0 >= x1) continue;
+
+					x0 = Math.max(x0, 0);
+					x1 = Math.min(x1, bitmap.width);
+					if(x0 < x1) bitmap.fill((int) x0, y, (int) x1 - 1, y, color);
+				}
+			}
+		} finally {
+			RenderMetrics.exit(startTime, bitmap, RenderMetrics.POLYGON, 1, pixels, 0xff);
+		}
 	}
 
 }